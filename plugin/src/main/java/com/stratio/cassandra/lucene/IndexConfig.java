@@ -50,24 +50,52 @@ public class IndexConfig {
     public static final String MAX_CACHED_MB_OPTION = "max_cached_mb";
     public static final int DEFAULT_MAX_CACHED_MB = 30;
 
+    public static final String FILTER_CACHE_MB_OPTION = "filter_cache_mb";
+    public static final int DEFAULT_FILTER_CACHE_MB = 32;
+
     public static final String INDEXING_THREADS_OPTION = "indexing_threads";
     public static final int DEFAULT_INDEXING_THREADS = 0;
 
     public static final String INDEXING_QUEUES_SIZE_OPTION = "indexing_queues_size";
     public static final int DEFAULT_INDEXING_QUEUES_SIZE = 50;
 
+    public static final String INDEXING_LOG_OPTION = "indexing_log";
+    public static final boolean DEFAULT_INDEXING_LOG = false;
+
+    public static final String MAX_COMMIT_DELAY_MS_OPTION = "max_commit_delay_ms";
+    public static final int DEFAULT_MAX_COMMIT_DELAY_MS = 0;
+
     public static final String PAGING_CACHE_SIZE_OPTION = "paging_cache_size";
     public static final int DEFAULT_PAGING_CACHE_SIZE = 100;
 
+    public static final String COLLECTING_THREADS_OPTION = "collecting_threads";
+    public static final int DEFAULT_COLLECTING_THREADS = 0;
+
+    public static final String SEARCH_CACHE_SIZE_OPTION = "search_cache_size";
+    public static final int DEFAULT_SEARCH_CACHE_SIZE = 1000;
+
+    public static final String SHARDS_OPTION = "shards";
+    public static final int DEFAULT_SHARDS = 1;
+
+    public static final String SEARCHING_THREADS_OPTION = "searching_threads";
+    public static final int DEFAULT_SEARCHING_THREADS = 0;
+
     private final Schema schema;
     private final double refreshSeconds;
     private final Path path;
     private final int ramBufferMB;
     private final int maxMergeMB;
     private final int maxCachedMB;
+    private final int filterCacheMB;
     private final int indexingThreads;
     private final int indexingQueuesSize;
+    private final boolean indexingLog;
+    private final int maxCommitDelayMs;
     private final int pagingCacheSize;
+    private final int collectingThreads;
+    private final int searchCacheSize;
+    private final int shards;
+    private final int searchingThreads;
 
     /**
      * Builds a new {@link IndexConfig} for the column family defined by the specified metadata using the specified
@@ -81,11 +109,18 @@ public class IndexConfig {
         ramBufferMB = parseRamBufferMB(options);
         maxMergeMB = parseMaxMergeMB(options);
         maxCachedMB = parseMaxCachedMB(options);
+        filterCacheMB = parseFilterCacheMB(options);
         indexingThreads = parseIndexingThreads(options);
         indexingQueuesSize = parseIndexingQueuesSize(options);
+        indexingLog = parseIndexingLog(options);
+        maxCommitDelayMs = parseMaxCommitDelayMs(options);
         schema = parseSchema(options, metadata);
         path = parsePath(options, metadata);
         pagingCacheSize = parsePagingCacheSize(options);
+        collectingThreads = parseCollectingThreads(options);
+        searchCacheSize = parseSearchCacheSize(options);
+        shards = parseShards(options);
+        searchingThreads = parseSearchingThreads(options);
     }
 
     /**
@@ -133,6 +168,15 @@ public class IndexConfig {
         return maxCachedMB;
     }
 
+    /**
+     * Returns the max size in MB of the per-segment filter cache, where {@code 0} means no caching.
+     *
+     * @return The max size in MB of the filter cache.
+     */
+    public int getFilterCacheMB() {
+        return filterCacheMB;
+    }
+
     /**
      * Returns the number of asynchronous indexing threads, where {@code 0} means synchronous indexing.
      *
@@ -151,6 +195,34 @@ public class IndexConfig {
         return indexingQueuesSize;
     }
 
+    /**
+     * Returns if the asynchronous index updates must be persisted in a local log, to be replayed after a crash.
+     *
+     * @return {@code true} if the asynchronous index updates must be logged, {@code false} otherwise.
+     */
+    public boolean getIndexingLog() {
+        return indexingLog;
+    }
+
+    /**
+     * Returns the path of the directory where the asynchronous index updates log is stored, next to the Lucene files.
+     *
+     * @return The path of the directory where the asynchronous index updates log is stored.
+     */
+    public Path getIndexingLogPath() {
+        return path.resolveSibling(path.getFileName() + "-log");
+    }
+
+    /**
+     * Returns the max time in milliseconds that a commit can be delayed to be shared with other commit requests, where
+     * {@code 0} means that only the concurrent requests are grouped.
+     *
+     * @return The max commit delay in milliseconds.
+     */
+    public int getMaxCommitDelayMs() {
+        return maxCommitDelayMs;
+    }
+
     /**
      * Returns the paging cache size.
      *
@@ -160,6 +232,44 @@ public class IndexConfig {
         return pagingCacheSize;
     }
 
+    /**
+     * Returns the number of threads used to read the rows matched by a search from Cassandra, where {@code 0} means
+     * reading them in the searching thread.
+     *
+     * @return The number of rows collecting threads.
+     */
+    public int getCollectingThreads() {
+        return collectingThreads;
+    }
+
+    /**
+     * Returns the max number of parsed searches and compiled queries to be cached.
+     *
+     * @return The max number of parsed searches and compiled queries to be cached.
+     */
+    public int getSearchCacheSize() {
+        return searchCacheSize;
+    }
+
+    /**
+     * Returns the number of token range shards in which the index is split, each one with its own Lucene index.
+     *
+     * @return The number of token range shards.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the number of threads used to search the index segments concurrently, where {@code 0} means a thread per
+     * shard if there are several shards, and searching in the calling thread otherwise.
+     *
+     * @return The number of searching threads.
+     */
+    public int getSearchingThreads() {
+        return searchingThreads;
+    }
+
     private static double parseRefresh(Map<String, String> options) {
         String refreshOption = options.get(REFRESH_SECONDS_OPTION);
         double refreshSeconds;
@@ -241,6 +351,26 @@ public class IndexConfig {
         }
     }
 
+    private static int parseFilterCacheMB(Map<String, String> options) {
+        String filterCacheMBOption = options.get(FILTER_CACHE_MB_OPTION);
+        int filterCacheMB;
+        if (filterCacheMBOption != null) {
+            try {
+                filterCacheMB = Integer.parseInt(filterCacheMBOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", FILTER_CACHE_MB_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (filterCacheMB < 0) {
+                String msg = String.format("'%s'  must be positive", FILTER_CACHE_MB_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return filterCacheMB;
+        } else {
+            return DEFAULT_FILTER_CACHE_MB;
+        }
+    }
+
     private static int parseIndexingThreads(Map<String, String> options) {
         String indexPoolNumQueuesOption = options.get(INDEXING_THREADS_OPTION);
         int indexingThreads;
@@ -277,6 +407,39 @@ public class IndexConfig {
         }
     }
 
+    private static boolean parseIndexingLog(Map<String, String> options) {
+        String indexingLogOption = options.get(INDEXING_LOG_OPTION);
+        if (indexingLogOption != null) {
+            if (!indexingLogOption.equalsIgnoreCase("true") && !indexingLogOption.equalsIgnoreCase("false")) {
+                String msg = String.format("'%s'  must be a boolean", INDEXING_LOG_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return Boolean.parseBoolean(indexingLogOption);
+        } else {
+            return DEFAULT_INDEXING_LOG;
+        }
+    }
+
+    private static int parseMaxCommitDelayMs(Map<String, String> options) {
+        String maxCommitDelayOption = options.get(MAX_COMMIT_DELAY_MS_OPTION);
+        int maxCommitDelayMs;
+        if (maxCommitDelayOption != null) {
+            try {
+                maxCommitDelayMs = Integer.parseInt(maxCommitDelayOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", MAX_COMMIT_DELAY_MS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (maxCommitDelayMs < 0) {
+                String msg = String.format("'%s'  must be positive", MAX_COMMIT_DELAY_MS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return maxCommitDelayMs;
+        } else {
+            return DEFAULT_MAX_COMMIT_DELAY_MS;
+        }
+    }
+
     private static Schema parseSchema(Map<String, String> options, CFMetaData metadata) {
         String schemaOption = options.get(SCHEMA_OPTION);
         Schema schema;
@@ -329,6 +492,86 @@ public class IndexConfig {
         }
     }
 
+    private static int parseCollectingThreads(Map<String, String> options) {
+        String collectingThreadsOption = options.get(COLLECTING_THREADS_OPTION);
+        int collectingThreads;
+        if (collectingThreadsOption != null) {
+            try {
+                collectingThreads = Integer.parseInt(collectingThreadsOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", COLLECTING_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (collectingThreads < 0) {
+                String msg = String.format("'%s'  must be positive", COLLECTING_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return collectingThreads;
+        } else {
+            return DEFAULT_COLLECTING_THREADS;
+        }
+    }
+
+    private static int parseSearchCacheSize(Map<String, String> options) {
+        String searchCacheSizeOption = options.get(SEARCH_CACHE_SIZE_OPTION);
+        int searchCacheSize;
+        if (searchCacheSizeOption != null) {
+            try {
+                searchCacheSize = Integer.parseInt(searchCacheSizeOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchCacheSize < 0) {
+                String msg = String.format("'%s'  must be positive", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return searchCacheSize;
+        } else {
+            return DEFAULT_SEARCH_CACHE_SIZE;
+        }
+    }
+
+    private static int parseShards(Map<String, String> options) {
+        String shardsOption = options.get(SHARDS_OPTION);
+        int shards;
+        if (shardsOption != null) {
+            try {
+                shards = Integer.parseInt(shardsOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a strictly positive integer", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (shards <= 0) {
+                String msg = String.format("'%s'  must be strictly positive", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return shards;
+        } else {
+            return DEFAULT_SHARDS;
+        }
+    }
+
+    private static int parseSearchingThreads(Map<String, String> options) {
+        String searchingThreadsOption = options.get(SEARCHING_THREADS_OPTION);
+        int searchingThreads;
+        if (searchingThreadsOption != null) {
+            try {
+                searchingThreads = Integer.parseInt(searchingThreadsOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", SEARCHING_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchingThreads < 0) {
+                String msg = String.format("'%s'  must be positive", SEARCHING_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            return searchingThreads;
+        } else {
+            return DEFAULT_SEARCHING_THREADS;
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -339,8 +582,16 @@ public class IndexConfig {
                       .add("ramBufferMB", ramBufferMB)
                       .add("maxMergeMB", maxMergeMB)
                       .add("maxCachedMB", maxCachedMB)
+                      .add("filterCacheMB", filterCacheMB)
                       .add("indexingThreads", indexingThreads)
                       .add("indexingQueuesSize", indexingQueuesSize)
+                      .add("indexingLog", indexingLog)
+                      .add("maxCommitDelayMs", maxCommitDelayMs)
+                      .add("pagingCacheSize", pagingCacheSize)
+                      .add("collectingThreads", collectingThreads)
+                      .add("searchCacheSize", searchCacheSize)
+                      .add("shards", shards)
+                      .add("searchingThreads", searchingThreads)
                       .toString();
     }
 }
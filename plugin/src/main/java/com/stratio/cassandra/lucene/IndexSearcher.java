@@ -16,9 +16,8 @@
 package com.stratio.cassandra.lucene;
 
 import com.google.common.base.Objects;
-import com.stratio.cassandra.lucene.schema.Schema;
 import com.stratio.cassandra.lucene.search.Search;
-import com.stratio.cassandra.lucene.search.SearchBuilder;
+import com.stratio.cassandra.lucene.service.RowComparator;
 import com.stratio.cassandra.lucene.service.RowService;
 import com.stratio.cassandra.lucene.util.Log;
 import org.apache.cassandra.db.DataRange;
@@ -33,11 +32,8 @@ import org.apache.cassandra.exceptions.InvalidRequestException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
 import static org.apache.cassandra.cql3.Operator.EQ;
 
@@ -50,7 +46,6 @@ class IndexSearcher extends SecondaryIndexSearcher {
 
     private final Index index;
     private final RowService rowService;
-    private final Schema schema;
     private final ByteBuffer indexedColumnName;
 
     /**
@@ -68,7 +63,6 @@ class IndexSearcher extends SecondaryIndexSearcher {
         super(indexManager, columns);
         this.index = index;
         this.rowService = rowService;
-        schema = rowService.getSchema();
         indexedColumnName = index.getColumnDefinition().name.bytes;
     }
 
@@ -128,7 +122,7 @@ class IndexSearcher extends SecondaryIndexSearcher {
     public void validate(IndexExpression indexExpression) throws InvalidRequestException {
         try {
             String json = UTF8Type.instance.compose(indexExpression.value);
-            SearchBuilder.fromJson(json).build().validate(schema);
+            rowService.getSearchCache().validate(json);
         } catch (Exception e) {
             throw new InvalidRequestException(e.getMessage());
         }
@@ -146,7 +140,7 @@ class IndexSearcher extends SecondaryIndexSearcher {
             throw new RuntimeException("There is no index expression in the clause");
         }
         String json = UTF8Type.instance.compose(indexedExpression.value);
-        return SearchBuilder.fromJson(json).build();
+        return rowService.getSearchCache().search(json);
     }
 
     /**
@@ -197,14 +191,12 @@ class IndexSearcher extends SecondaryIndexSearcher {
         long startTime = System.currentTimeMillis();
 
         // Remove duplicates
-        TreeSet<Row> set = new TreeSet<>(rowService.comparator());
-        set.addAll(rows);
-        List<Row> result = new ArrayList<>(set);
+        List<Row> result = rowService.removeDuplicates(rows);
 
-        // Sort
+        // Merge the already sorted partial results
         Search search = search(clause);
-        Comparator<Row> comparator = rowService.comparator(search);
-        Collections.sort(result, comparator);
+        RowComparator comparator = rowService.comparator(search);
+        result = comparator.merge(result);
 
         String comparatorName = comparator.getClass().getSimpleName();
         int endSize = result.size();
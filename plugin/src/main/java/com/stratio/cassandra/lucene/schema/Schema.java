@@ -28,7 +28,9 @@ import org.apache.lucene.document.Document;
 
 import java.io.Closeable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class for several columns mappings between Cassandra and Lucene.
@@ -130,6 +132,19 @@ public class Schema implements Closeable {
         return null;
     }
 
+    /**
+     * Returns the names of the Cassandra columns mapped by any of the {@link Mapper}s.
+     *
+     * @return The names of the Cassandra columns mapped by any of the {@link Mapper}s.
+     */
+    public Set<String> getMappedColumns() {
+        Set<String> columns = new HashSet<>();
+        for (Mapper mapper : mappers.values()) {
+            columns.addAll(mapper.getColumns());
+        }
+        return columns;
+    }
+
     /**
      * Adds to the specified {@link Document} the Lucene fields representing the specified {@link Columns}.
      *
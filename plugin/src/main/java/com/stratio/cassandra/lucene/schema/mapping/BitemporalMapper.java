@@ -40,7 +40,9 @@ import org.apache.lucene.spatial.prefix.tree.NumberRangePrefixTree.UnitNRShape;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 /**
  * A {@link Mapper} to map bitemporal DateRanges.
@@ -338,6 +340,12 @@ public class BitemporalMapper extends Mapper {
         validate(metaData, ttTo);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getColumns() {
+        return Arrays.asList(vtFrom, vtTo, ttFrom, ttTo);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
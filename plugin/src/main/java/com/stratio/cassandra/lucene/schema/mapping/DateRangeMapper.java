@@ -41,7 +41,9 @@ import org.apache.lucene.spatial.prefix.tree.NumberRangePrefixTree.UnitNRShape;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 /**
  * A {@link Mapper} to map 1-dimensional ranges of dates.
@@ -165,6 +167,12 @@ public class DateRangeMapper extends Mapper {
         validate(metadata, stop);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getColumns() {
+        return Arrays.asList(start, stop);
+    }
+
     /**
      * Makes an spatial shape representing the time range defined by the two specified dates.
      *
@@ -38,6 +38,9 @@ import org.apache.lucene.spatial.prefix.RecursivePrefixTreeStrategy;
 import org.apache.lucene.spatial.prefix.tree.GeohashPrefixTree;
 import org.apache.lucene.spatial.prefix.tree.SpatialPrefixTree;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * A {@link Mapper} to map geographical points.
  *
@@ -145,6 +148,12 @@ public class GeoPointMapper extends Mapper {
         validate(metadata, longitude);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getColumns() {
+        return Arrays.asList(latitude, longitude);
+    }
+
     /**
      * Returns the latitude contained in the specified {@link Columns}. A valid latitude must in the range [-90, 90].
      *
@@ -121,8 +121,19 @@ public class Search {
      * @return The Lucene {@link Query} representation of this search.
      */
     public Query query(Schema schema, Query rangeQuery) {
-        if (queryCondition == null && filterCondition == null && rangeQuery == null) {
-            return new MatchAllDocsQuery();
+        return query(query(schema), rangeQuery);
+    }
+
+    /**
+     * Returns the Lucene {@link Query} representation of the querying and filtering {@link Condition}s of this search,
+     * without any range restriction. Being independent of the searched range, this {@link Query} can be reused.
+     *
+     * @param schema The {@link Schema} to be used.
+     * @return The Lucene {@link Query} representation of the conditions, maybe {@code null} meaning no conditions.
+     */
+    public Query query(Schema schema) {
+        if (queryCondition == null && filterCondition == null) {
+            return null;
         }
         BooleanQuery booleanQuery = new BooleanQuery();
         if (queryCondition != null) {
@@ -133,9 +144,29 @@ public class Search {
             Query query = filterCondition.query(schema);
             booleanQuery.add(query, BooleanClause.Occur.FILTER);
         }
-        if (rangeQuery != null) {
-            booleanQuery.add(rangeQuery, BooleanClause.Occur.FILTER);
+        return booleanQuery;
+    }
+
+    /**
+     * Returns the Lucene {@link Query} combining the specified conditions {@link Query}, as returned by {@link
+     * #query(Schema)}, with the specified range {@link Query}. The specified queries are not modified. If none of them
+     * is set, then a {@link MatchAllDocsQuery} is returned, so it never returns {@code null}.
+     *
+     * @param conditionsQuery The conditions {@link Query} of this search, maybe {@code null}.
+     * @param rangeQuery      An additional range {@link Query}, maybe {@code null}.
+     * @return The Lucene {@link Query} representation of this search.
+     */
+    public Query query(Query conditionsQuery, Query rangeQuery) {
+        if (conditionsQuery == null && rangeQuery == null) {
+            return new MatchAllDocsQuery();
+        } else if (rangeQuery == null) {
+            return conditionsQuery;
+        }
+        BooleanQuery booleanQuery = new BooleanQuery();
+        if (conditionsQuery != null) {
+            booleanQuery.add(conditionsQuery, usesRelevance() ? BooleanClause.Occur.MUST : BooleanClause.Occur.FILTER);
         }
+        booleanQuery.add(rangeQuery, BooleanClause.Occur.FILTER);
         return booleanQuery;
     }
 
@@ -145,9 +176,7 @@ public class Search {
      * @param schema A {@link Schema}.
      */
     public void validate(Schema schema) {
-        if (queryCondition != null || filterCondition != null) {
-            query(schema, null);
-        }
+        query(schema);
         if (sort != null) {
             sort.sort(schema);
         }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.db.composites.CBuilder;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.ReversedType;
+import org.apache.cassandra.db.marshal.TimeUUIDType;
+import org.apache.cassandra.db.marshal.TimestampType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Byte-comparable encoding of clustering keys, so the unsigned lexicographic order of the encoded keys is the same as
+ * the order defined by the table {@link CellNameType}. This allows searching clustering key slices seeking the term
+ * dictionary and sorting by clustering key comparing doc values ordinals.
+ *
+ * Each clustering column value is transformed into an unsigned comparable form, its zero bytes are escaped as {@code
+ * 0x00 0xFF} and it is terminated with {@code 0x00 0x00}, so a shorter value always sorts before its extensions. The
+ * bytes of reversed columns are inverted. Values are preceded by a {@code 0x01} marker, and empty values are encoded
+ * as a single {@code 0x00}, because Cassandra sorts them first even in reversed columns. This way, the encoding of a
+ * clustering prefix is a prefix of the encodings of all the keys starting with it.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public final class ClusteringKeyEncoder {
+
+    /** The type of the clustering key, which is the type of the column names */
+    private final CellNameType cellNameType;
+
+    /** The number of clustering columns */
+    private final int numClusteringColumns;
+
+    /**
+     * Builds a new {@link ClusteringKeyEncoder} for the specified type.
+     *
+     * @param cellNameType         The type of the cell names.
+     * @param numClusteringColumns The number of clustering columns.
+     */
+    private ClusteringKeyEncoder(CellNameType cellNameType, int numClusteringColumns) {
+        this.cellNameType = cellNameType;
+        this.numClusteringColumns = numClusteringColumns;
+    }
+
+    /**
+     * Returns a new {@link ClusteringKeyEncoder} for the specified cell name type, or {@code null} if any of its
+     * clustering columns has a type without byte-comparable encoding.
+     *
+     * @param cellNameType         The type of the cell names.
+     * @param numClusteringColumns The number of clustering columns.
+     * @return A new {@link ClusteringKeyEncoder}, or {@code null} if the clustering key can't be encoded.
+     */
+    public static ClusteringKeyEncoder instance(CellNameType cellNameType, int numClusteringColumns) {
+        for (int i = 0; i < numClusteringColumns; i++) {
+            if (!isSupported(cellNameType.subtype(i))) {
+                return null;
+            }
+        }
+        return new ClusteringKeyEncoder(cellNameType, numClusteringColumns);
+    }
+
+    /**
+     * Returns if the specified clustering column type has a byte-comparable encoding.
+     *
+     * @param type A clustering column type.
+     * @return {@code true} if {@code type} can be encoded, {@code false} otherwise.
+     */
+    static boolean isSupported(AbstractType<?> type) {
+        if (type instanceof ReversedType) {
+            return isSupported(((ReversedType<?>) type).baseType);
+        }
+        return type instanceof BytesType ||
+               type instanceof UTF8Type ||
+               type instanceof AsciiType ||
+               type instanceof BooleanType ||
+               type instanceof Int32Type ||
+               type instanceof LongType ||
+               type instanceof TimestampType ||
+               type instanceof DoubleType ||
+               type instanceof FloatType ||
+               type instanceof TimeUUIDType;
+    }
+
+    /**
+     * Returns the byte-comparable encoding of the clustering columns contained in the specified {@link
+     * Composite}, which can be a full clustering key or just a prefix of it. Any component after the clustering
+     * columns is ignored.
+     *
+     * @param composite A {@link Composite} cell name or clustering prefix.
+     * @return The byte-comparable encoding of {@code composite}.
+     */
+    public BytesRef encode(Composite composite) {
+        int size = Math.min(composite.size(), numClusteringColumns);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < size; i++) {
+            encode(cellNameType.subtype(i), composite.get(i), out);
+        }
+        return new BytesRef(out.toByteArray());
+    }
+
+    /**
+     * Returns the clustering key represented by the specified term, which must have been generated with {@link
+     * #encode(Composite)} from a full clustering key.
+     *
+     * @param bytesRef The {@link BytesRef} containing the encoded clustering key.
+     * @return The clustering key represented by {@code bytesRef}.
+     */
+    public CellName decode(BytesRef bytesRef) {
+        byte[] bytes = bytesRef.bytes;
+        CBuilder builder = cellNameType.builder();
+        int[] position = new int[]{bytesRef.offset};
+        for (int i = 0; i < numClusteringColumns; i++) {
+            builder.add(decode(cellNameType.subtype(i), bytes, position));
+        }
+        return cellNameType.rowMarker(builder.build());
+    }
+
+    private static void encode(AbstractType<?> type, ByteBuffer value, ByteArrayOutputStream out) {
+        boolean reversed = type instanceof ReversedType;
+        AbstractType<?> baseType = reversed ? ((ReversedType<?>) type).baseType : type;
+        if (!value.hasRemaining()) {
+            out.write(0x00);
+            return;
+        }
+        out.write(0x01);
+        byte[] bytes = comparable(baseType, ByteBufferUtil.getArray(value));
+        int mask = reversed ? 0xFF : 0x00;
+        for (byte b : bytes) {
+            out.write(b ^ mask);
+            if (b == 0) {
+                out.write(0xFF ^ mask);
+            }
+        }
+        out.write(mask);
+        out.write(mask);
+    }
+
+    private static ByteBuffer decode(AbstractType<?> type, byte[] bytes, int[] position) {
+        boolean reversed = type instanceof ReversedType;
+        AbstractType<?> baseType = reversed ? ((ReversedType<?>) type).baseType : type;
+        int mask = reversed ? 0xFF : 0x00;
+        int i = position[0];
+        if (bytes[i++] == 0x00) {
+            position[0] = i;
+            return ByteBufferUtil.EMPTY_BYTE_BUFFER;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            int b = (bytes[i++] ^ mask) & 0xFF;
+            if (b == 0) {
+                int next = (bytes[i++] ^ mask) & 0xFF;
+                if (next == 0) {
+                    break;
+                }
+            }
+            out.write(b);
+        }
+        position[0] = i;
+        return ByteBuffer.wrap(original(baseType, out.toByteArray()));
+    }
+
+    /**
+     * Returns the unsigned comparable form of the specified non empty serialized value of the specified non reversed
+     * type.
+     *
+     * @param type  A supported clustering column type.
+     * @param bytes A serialized value of {@code type}.
+     * @return The unsigned comparable form of {@code bytes}.
+     */
+    private static byte[] comparable(AbstractType<?> type, byte[] bytes) {
+        if (type instanceof Int32Type || type instanceof LongType || type instanceof TimestampType) {
+            byte[] result = bytes.clone();
+            result[0] ^= 0x80;
+            return result;
+        } else if (type instanceof DoubleType) {
+            long bits = Double.doubleToLongBits(ByteBuffer.wrap(bytes).getDouble());
+            bits ^= bits < 0 ? -1L : Long.MIN_VALUE;
+            return ByteBuffer.allocate(8).putLong(0, bits).array();
+        } else if (type instanceof FloatType) {
+            int bits = Float.floatToIntBits(ByteBuffer.wrap(bytes).getFloat());
+            bits ^= bits < 0 ? -1 : Integer.MIN_VALUE;
+            return ByteBuffer.allocate(4).putInt(0, bits).array();
+        } else if (type instanceof TimeUUIDType) {
+            // Timestamp first, then the whole UUID compared as signed bytes
+            byte[] result = new byte[24];
+            result[0] = (byte) (bytes[6] & 0x0F);
+            result[1] = bytes[7];
+            result[2] = bytes[4];
+            result[3] = bytes[5];
+            System.arraycopy(bytes, 0, result, 4, 4);
+            for (int i = 0; i < 16; i++) {
+                result[8 + i] = (byte) (bytes[i] ^ 0x80);
+            }
+            return result;
+        } else {
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the serialized value represented by the specified unsigned comparable form of the specified non reversed
+     * type.
+     *
+     * @param type  A supported clustering column type.
+     * @param bytes The unsigned comparable form of a value of {@code type}.
+     * @return The serialized value represented by {@code bytes}.
+     */
+    private static byte[] original(AbstractType<?> type, byte[] bytes) {
+        if (type instanceof Int32Type || type instanceof LongType || type instanceof TimestampType) {
+            bytes[0] ^= 0x80;
+            return bytes;
+        } else if (type instanceof DoubleType) {
+            long bits = ByteBuffer.wrap(bytes).getLong();
+            bits ^= bits < 0 ? Long.MIN_VALUE : -1L;
+            return ByteBuffer.allocate(8).putLong(0, bits).array();
+        } else if (type instanceof FloatType) {
+            int bits = ByteBuffer.wrap(bytes).getInt();
+            bits ^= bits < 0 ? Integer.MIN_VALUE : -1;
+            return ByteBuffer.allocate(4).putInt(0, bits).array();
+        } else if (type instanceof TimeUUIDType) {
+            byte[] result = new byte[16];
+            for (int i = 0; i < 16; i++) {
+                result[i] = (byte) (bytes[8 + i] ^ 0x80);
+            }
+            return result;
+        } else {
+            return bytes;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.stratio.cassandra.lucene.service;
 
 import com.stratio.cassandra.lucene.schema.column.Column;
 import com.stratio.cassandra.lucene.schema.column.Columns;
+import com.stratio.cassandra.lucene.util.BinaryTermField;
 import com.stratio.cassandra.lucene.util.ByteBufferUtils;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
@@ -31,10 +32,11 @@ import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.filter.ColumnSlice;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
-import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FieldComparatorSource;
 import org.apache.lucene.search.Query;
@@ -62,12 +64,18 @@ public class ClusteringKeyMapper {
     /** The Lucene field name */
     public static final String FIELD_NAME = "_clustering_key";
 
+    /** The Lucene field name of the byte-comparable encoding of the clustering key */
+    public static final String COMPARABLE_FIELD_NAME = "_clustering_key_comparable";
+
     /** The column family meta data */
     private final CFMetaData metadata;
 
     /** The type of the clustering key, which is the type of the column names */
     private final CellNameType cellNameType;
 
+    /** The byte-comparable encoder of the clustering key, {@code null} if the clustering key types don't support it */
+    private final ClusteringKeyEncoder encoder;
+
     /**
      * Returns a new {@code ClusteringKeyMapper} according to the specified column family meta data.
      *
@@ -76,6 +84,7 @@ public class ClusteringKeyMapper {
     private ClusteringKeyMapper(CFMetaData metadata) {
         this.metadata = metadata;
         this.cellNameType = metadata.comparator;
+        this.encoder = ClusteringKeyEncoder.instance(cellNameType, metadata.clusteringColumns().size());
     }
 
     /**
@@ -97,6 +106,15 @@ public class ClusteringKeyMapper {
         return cellNameType;
     }
 
+    /**
+     * Returns the byte-comparable encoder of the clustering key, if the types of the clustering columns support it.
+     *
+     * @return The byte-comparable encoder of the clustering key, or {@code null} if it's not supported.
+     */
+    public ClusteringKeyEncoder getEncoder() {
+        return encoder;
+    }
+
     /**
      * Adds to the specified document the clustering key contained in the specified cell name.
      *
@@ -104,10 +122,15 @@ public class ClusteringKeyMapper {
      * @param cellName A cell name containing the clustering key to be added.
      */
     public void addFields(Document document, CellName cellName) {
-        String serializedKey = ByteBufferUtils.toString(cellName.toByteBuffer());
-        BytesRef bytesRef = new BytesRef(serializedKey);
-        document.add(new StringField(FIELD_NAME, serializedKey, Field.Store.YES));
-        document.add(new SortedDocValuesField(FIELD_NAME, bytesRef));
+        BytesRef bytesRef = ByteBufferUtils.bytesRef(cellName.toByteBuffer());
+        if (encoder == null) {
+            document.add(new BinaryTermField(FIELD_NAME, bytesRef));
+        } else {
+            BytesRef comparableKey = encoder.encode(cellName);
+            document.add(new BinaryTermField(COMPARABLE_FIELD_NAME, comparableKey));
+            document.add(new SortedDocValuesField(COMPARABLE_FIELD_NAME, comparableKey));
+        }
+        document.add(new BinaryDocValuesField(FIELD_NAME, bytesRef));
     }
 
     /**
@@ -186,15 +209,16 @@ public class ClusteringKeyMapper {
     }
 
     /**
-     * Returns the clustering key contained in the specified {@link CellName}.
+     * Returns the clustering key of the specified document, read from the doc values of the specified segment reader.
      *
-     * @param document A {@link Document}.
-     * @return The clustering key contained in the specified {@link CellName}.
+     * @param reader A Lucene segment reader.
+     * @param docId  The document id inside {@code reader}.
+     * @return The clustering key of the specified document.
+     * @throws IOException If Lucene throws IO errors.
      */
-    public final CellName clusteringKey(Document document) {
-        String string = document.get(FIELD_NAME);
-        ByteBuffer bb = ByteBufferUtils.fromString(string);
-        return cellNameType.cellFromByteBuffer(bb);
+    public final CellName clusteringKey(LeafReader reader, int docId) throws IOException {
+        BinaryDocValues docValues = reader.getBinaryDocValues(FIELD_NAME);
+        return clusteringKey(docValues.get(docId));
     }
 
     /**
@@ -204,18 +228,16 @@ public class ClusteringKeyMapper {
      * @return The clustering key contained in the specified Lucene field value.
      */
     public final CellName clusteringKey(BytesRef bytesRef) {
-        String string = bytesRef.utf8ToString();
-        ByteBuffer bb = ByteBufferUtils.fromString(string);
-        return cellNameType.cellFromByteBuffer(bb);
+        return cellNameType.cellFromByteBuffer(ByteBufferUtils.byteBuffer(bytesRef));
     }
 
     /**
-     * Returns the clustering key contained in the specified {@link CellName}.
+     * Returns the clustering key contained in the specified {@link Composite} cell name.
      *
-     * @param cellName A {@link CellName}.
-     * @return The clustering key contained in the specified {@link CellName}.
+     * @param cellName A {@link Composite} cell name.
+     * @return The clustering key contained in the specified {@link Composite} cell name.
      */
-    private CellName clusteringKey(CellName cellName) {
+    public final CellName clusteringKey(Composite cellName) {
         CBuilder builder = cellNameType.builder();
         for (int i = 0; i < metadata.clusteringColumns().size(); i++) {
             ByteBuffer component = cellName.get(i);
@@ -269,6 +291,26 @@ public class ClusteringKeyMapper {
         return columns;
     }
 
+    /**
+     * Compares the clustering keys of the specified cell names, ignoring any other cell name component. It doesn't
+     * allocate any object, so it's suitable for joining large amounts of cells and clustering keys.
+     *
+     * @param cellName1 A cell name.
+     * @param cellName2 Another cell name.
+     * @return A negative integer, zero, or a positive integer as the clustering key of {@code cellName1} is less than,
+     * equal to, or greater than the clustering key of {@code cellName2}.
+     */
+    public final int compareClusteringKeys(CellName cellName1, CellName cellName2) {
+        int numClusteringColumns = cellNameType.clusteringPrefixSize();
+        for (int i = 0; i < numClusteringColumns; i++) {
+            int comparison = cellNameType.subtype(i).compare(cellName1.get(i), cellName2.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
     public final Map<CellName, ColumnFamily> splitRows(ColumnFamily columnFamily) {
         Map<CellName, ColumnFamily> columnFamilies = new LinkedHashMap<>();
         for (Cell cell : columnFamily) {
@@ -285,6 +327,18 @@ public class ClusteringKeyMapper {
         return columnFamilies;
     }
 
+    /**
+     * Returns the {@link ColumnSlice} covering all the logic CQL3 rows between the specified clustering keys, both
+     * inclusive.
+     *
+     * @param first The first clustering key according to the table cell name comparator.
+     * @param last  The last clustering key according to the table cell name comparator.
+     * @return The {@link ColumnSlice} covering all the logic CQL3 rows between {@code first} and {@code last}.
+     */
+    public final ColumnSlice columnSlice(CellName first, CellName last) {
+        return new ColumnSlice(start(first), end(last));
+    }
+
     public final ColumnSlice[] columnSlices(List<CellName> clusteringKeys) {
         List<CellName> sortedClusteringKeys = sort(clusteringKeys);
         ColumnSlice[] columnSlices = new ColumnSlice[clusteringKeys.size()];
@@ -316,11 +370,16 @@ public class ClusteringKeyMapper {
     }
 
     /**
-     * Returns a Lucene {@link SortField} array for sorting documents/rows according to the column family name.
+     * Returns a Lucene {@link SortField} array for sorting documents/rows according to the column family name. If the
+     * clustering key has a byte-comparable encoding the documents are sorted comparing ordinals, otherwise the
+     * clustering keys must be decoded for each comparison.
      *
      * @return A Lucene {@link SortField} array for sorting documents/rows according to the column family name.
      */
     public SortField[] sortFields() {
+        if (encoder != null) {
+            return new SortField[]{new SortField(COMPARABLE_FIELD_NAME, SortField.Type.STRING)};
+        }
         return new SortField[]{new SortField(FIELD_NAME, new FieldComparatorSource() {
             @Override
             public FieldComparator<?> newComparator(String field, int hits, int sort, boolean reversed)
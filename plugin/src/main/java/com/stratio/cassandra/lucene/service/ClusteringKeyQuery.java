@@ -25,10 +25,16 @@ import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.MultiTermQuery;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 
 import java.io.IOException;
 
 /**
+ * {@link MultiTermQuery} to retrieve documents whose clustering key is between two clustering prefixes. If the
+ * clustering key has a byte-comparable encoding, the term dictionary is sought to the start prefix and enumeration
+ * stops after the stop prefix, decoding only the terms sharing a prefix with any of the bounds. Otherwise, all the terms
+ * are decoded and compared.
+ *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
 class ClusteringKeyQuery extends MultiTermQuery {
@@ -37,18 +43,32 @@ class ClusteringKeyQuery extends MultiTermQuery {
     private final Composite start;
     private final Composite stop;
     private final CellNameType type;
+    private final ClusteringKeyEncoder encoder;
 
     public ClusteringKeyQuery(Composite start, Composite stop, ClusteringKeyMapper clusteringKeyMapper) {
-        super(ClusteringKeyMapper.FIELD_NAME);
+        super(clusteringKeyMapper.getEncoder() == null
+              ? ClusteringKeyMapper.FIELD_NAME
+              : ClusteringKeyMapper.COMPARABLE_FIELD_NAME);
         this.start = start;
         this.stop = stop;
         this.clusteringKeyMapper = clusteringKeyMapper;
         this.type = clusteringKeyMapper.getType();
+        this.encoder = clusteringKeyMapper.getEncoder();
     }
 
     @Override
     protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
-        return new FullKeyDataRangeFilteredTermsEnum(terms.iterator(null));
+        if (encoder == null) {
+            return new FullKeyDataRangeFilteredTermsEnum(terms.iterator(null));
+        }
+        return new ComparableFilteredTermsEnum(terms.iterator(null));
+    }
+
+    private boolean accept(CellName clusteringKey) {
+        if (start != null && !start.isEmpty() && type.compare(start, clusteringKey) > 0) {
+            return false;
+        }
+        return stop == null || stop.isEmpty() || type.compare(stop, clusteringKey) >= 0;
     }
 
     @Override
@@ -59,6 +79,26 @@ class ClusteringKeyQuery extends MultiTermQuery {
                                         .toString();
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+
+        ClusteringKeyQuery that = (ClusteringKeyQuery) o;
+
+        if (start != null ? !start.equals(that.start) : that.start != null) return false;
+        return stop != null ? stop.equals(that.stop) : that.stop == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (start != null ? start.hashCode() : 0);
+        result = 31 * result + (stop != null ? stop.hashCode() : 0);
+        return result;
+    }
+
     private class FullKeyDataRangeFilteredTermsEnum extends FilteredTermsEnum {
 
         public FullKeyDataRangeFilteredTermsEnum(TermsEnum tenum) {
@@ -69,11 +109,32 @@ class ClusteringKeyQuery extends MultiTermQuery {
         @Override
         protected AcceptStatus accept(BytesRef term) {
             CellName clusteringKey = clusteringKeyMapper.clusteringKey(term);
-            if (start != null && !start.isEmpty() && type.compare(start, clusteringKey) > 0) {
-                return AcceptStatus.NO;
+            return ClusteringKeyQuery.this.accept(clusteringKey) ? AcceptStatus.YES : AcceptStatus.NO;
+        }
+    }
+
+    private class ComparableFilteredTermsEnum extends FilteredTermsEnum {
+
+        private final BytesRef lower; // The encoded start prefix, null if there's no start
+        private final BytesRef upper; // The encoded stop prefix, null if there's no stop
+
+        public ComparableFilteredTermsEnum(TermsEnum tenum) {
+            super(tenum);
+            lower = start == null || start.isEmpty() ? null : encoder.encode(start);
+            upper = stop == null || stop.isEmpty() ? null : encoder.encode(stop);
+            setInitialSeekTerm(lower == null ? new BytesRef() : lower);
+        }
+
+        @Override
+        protected AcceptStatus accept(BytesRef term) {
+            boolean lowerBoundary = lower != null && StringHelper.startsWith(term, lower);
+            boolean upperBoundary = upper != null && StringHelper.startsWith(term, upper);
+            if (upper != null && !upperBoundary && term.compareTo(upper) > 0) {
+                return AcceptStatus.END;
             }
-            if (stop != null && !stop.isEmpty() && type.compare(stop, clusteringKey) < 0) {
-                return AcceptStatus.NO;
+            if (lowerBoundary || upperBoundary) {
+                CellName clusteringKey = encoder.decode(term);
+                return ClusteringKeyQuery.this.accept(clusteringKey) ? AcceptStatus.YES : AcceptStatus.NO;
             }
             return AcceptStatus.YES;
         }
@@ -15,16 +15,13 @@
  */
 package com.stratio.cassandra.lucene.service;
 
+import com.stratio.cassandra.lucene.util.BinaryTermField;
 import com.stratio.cassandra.lucene.util.ByteBufferUtils;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
-import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.Field.Store;
-import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.Term;
 
 import java.nio.ByteBuffer;
@@ -79,10 +76,6 @@ public class FullKeyMapper {
         return type.builder().add(partitionKey.getKey()).add(cellName.toByteBuffer()).build();
     }
 
-    public String hash(DecoratedKey partitionKey, CellName cellName) {
-        return ByteBufferUtil.bytesToHex(byteBuffer(partitionKey, cellName));
-    }
-
     /**
      * Adds to the specified Lucene {@link Document} the full row key formed by the specified partition key and the
      * clustering key.
@@ -93,9 +86,7 @@ public class FullKeyMapper {
      */
     public void addFields(Document document, DecoratedKey partitionKey, CellName clusteringKey) {
         ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
-        String string = ByteBufferUtils.toString(fullKey);
-        Field field = new StringField(FIELD_NAME, string, Store.NO);
-        document.add(field);
+        document.add(new BinaryTermField(FIELD_NAME, ByteBufferUtils.bytesRef(fullKey)));
     }
 
     /**
@@ -108,7 +99,7 @@ public class FullKeyMapper {
      */
     public Term term(DecoratedKey partitionKey, CellName clusteringKey) {
         ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
-        return new Term(FIELD_NAME, ByteBufferUtils.toString(fullKey));
+        return new Term(FIELD_NAME, ByteBufferUtils.bytesRef(fullKey));
     }
 
 }
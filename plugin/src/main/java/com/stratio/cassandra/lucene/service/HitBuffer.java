@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Arrays;
+
+/**
+ * Reusable columnar buffer of Lucene search hits. Each hit is stored at a position of several parallel arrays holding
+ * its document id, score, sort values and decoded row keys, so a page of hits can be processed without allocating an
+ * object per hit. The buffer is meant to be cleared and refilled for each batch of hits of the same search.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class HitBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int size; // The number of buffered hits
+    private ScoreDoc[] scoreDocs; // The original Lucene hits
+    private int[] docs; // The Lucene document ids
+    private float[] scores; // The Lucene scores
+    private Object[][] sortValues; // The Lucene sort values, if any
+    private DecoratedKey[] partitionKeys; // The decoded partition keys
+    private CellName[] clusteringKeys; // The decoded clustering keys, if any
+
+    /**
+     * Builds a new empty {@link HitBuffer}.
+     */
+    public HitBuffer() {
+        scoreDocs = new ScoreDoc[DEFAULT_CAPACITY];
+        docs = new int[DEFAULT_CAPACITY];
+        scores = new float[DEFAULT_CAPACITY];
+        sortValues = new Object[DEFAULT_CAPACITY][];
+        partitionKeys = new DecoratedKey[DEFAULT_CAPACITY];
+        clusteringKeys = new CellName[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Removes all the buffered hits, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(scoreDocs, 0, size, null);
+        Arrays.fill(sortValues, 0, size, null);
+        Arrays.fill(partitionKeys, 0, size, null);
+        Arrays.fill(clusteringKeys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Appends the specified range of Lucene hits, whose keys are still to be decoded.
+     *
+     * @param hits The Lucene hits.
+     * @param from The position of the first hit to be added, inclusive.
+     * @param to   The position of the last hit to be added, exclusive.
+     */
+    public void add(ScoreDoc[] hits, int from, int to) {
+        ensureCapacity(size + to - from);
+        for (int i = from; i < to; i++) {
+            ScoreDoc scoreDoc = hits[i];
+            scoreDocs[size] = scoreDoc;
+            docs[size] = scoreDoc.doc;
+            scores[size] = scoreDoc.score;
+            sortValues[size] = scoreDoc instanceof FieldDoc ? ((FieldDoc) scoreDoc).fields : null;
+            size++;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docs.length) {
+            int newLength = ArrayUtil.oversize(capacity, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+            scoreDocs = Arrays.copyOf(scoreDocs, newLength);
+            docs = Arrays.copyOf(docs, newLength);
+            scores = Arrays.copyOf(scores, newLength);
+            sortValues = Arrays.copyOf(sortValues, newLength);
+            partitionKeys = Arrays.copyOf(partitionKeys, newLength);
+            clusteringKeys = Arrays.copyOf(clusteringKeys, newLength);
+        }
+    }
+
+    /**
+     * Sets the decoded row keys of the hit at the specified position.
+     *
+     * @param position      A hit position.
+     * @param partitionKey  The partition key.
+     * @param clusteringKey The clustering key, maybe {@code null}.
+     */
+    public void setKeys(int position, DecoratedKey partitionKey, CellName clusteringKey) {
+        partitionKeys[position] = partitionKey;
+        clusteringKeys[position] = clusteringKey;
+    }
+
+    /**
+     * Returns the number of buffered hits.
+     *
+     * @return The number of buffered hits.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the original Lucene hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The original Lucene hit.
+     */
+    public ScoreDoc scoreDoc(int position) {
+        return scoreDocs[position];
+    }
+
+    /**
+     * Returns the Lucene document id of the hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The Lucene document id.
+     */
+    public int doc(int position) {
+        return docs[position];
+    }
+
+    /**
+     * Returns the Lucene score of the hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The Lucene score.
+     */
+    public float score(int position) {
+        return scores[position];
+    }
+
+    /**
+     * Returns the Lucene sort values of the hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The Lucene sort values, or {@code null} if the search is not sorted by fields.
+     */
+    public Object[] sortValues(int position) {
+        return sortValues[position];
+    }
+
+    /**
+     * Returns the partition key of the hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The partition key.
+     */
+    public DecoratedKey partitionKey(int position) {
+        return partitionKeys[position];
+    }
+
+    /**
+     * Returns the clustering key of the hit at the specified position.
+     *
+     * @param position A hit position.
+     * @return The clustering key, or {@code null} if the table has no clustering key.
+     */
+    public CellName clusteringKey(int position) {
+        return clusteringKeys[position];
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.stratio.cassandra.lucene.util.GroupCommitter;
+import com.stratio.cassandra.lucene.util.IndexingPipeline;
+import com.stratio.cassandra.lucene.util.Log;
+
+import javax.management.MBeanException;
+import javax.management.ObjectName;
+import javax.management.OperationsException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the write path of an index, registered as a JMX MBean.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class IndexingStats implements IndexingStatsMBean {
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong skippedReads = new AtomicLong();
+    private final AtomicLong skippedMutations = new AtomicLong();
+    private final AtomicLong queuedUpdates = new AtomicLong();
+    private final AtomicLong coalescedUpdates = new AtomicLong();
+    private final IndexingPipeline pipeline;
+    private final GroupCommitter committer;
+    private ObjectName objectName;
+
+    /**
+     * Builds a new {@link IndexingStats} for the specified index, registering it as a JMX MBean.
+     *
+     * @param keyspace  The keyspace name.
+     * @param table     The table name.
+     * @param name      The index name.
+     * @param pipeline  The asynchronous indexing pipeline, maybe {@code null} meaning synchronous indexing.
+     * @param committer The coordinator of the commit requests.
+     */
+    public IndexingStats(String keyspace,
+                         String table,
+                         String name,
+                         IndexingPipeline pipeline,
+                         GroupCommitter committer) {
+        this.pipeline = pipeline;
+        this.committer = committer;
+        try {
+            objectName = new ObjectName(String.format(
+                    "com.stratio.cassandra.lucene:type=IndexingStats,keyspace=%s,table=%s,index=%s",
+                    keyspace,
+                    table,
+                    name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while registering MBean");
+        }
+    }
+
+    /**
+     * Records the indexing of a mutation whose rows have been read from the storage engine.
+     */
+    public void read() {
+        reads.incrementAndGet();
+    }
+
+    /**
+     * Records the indexing of a mutation whose rows have been indexed without reading them.
+     */
+    public void skippedRead() {
+        skippedReads.incrementAndGet();
+    }
+
+    /**
+     * Records a mutation that has not been indexed because it can't change the index.
+     */
+    public void skippedMutation() {
+        skippedMutations.incrementAndGet();
+    }
+
+    /**
+     * Records an asynchronous update queued as a new indexing task.
+     */
+    public void queuedUpdate() {
+        queuedUpdates.incrementAndGet();
+    }
+
+    /**
+     * Records an asynchronous update merged into an already queued indexing task.
+     */
+    public void coalescedUpdate() {
+        coalescedUpdates.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getReads() {
+        return reads.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSkippedReads() {
+        return skippedReads.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getSkippedReadsRatio() {
+        long skipped = skippedReads.get();
+        long total = skipped + reads.get();
+        return total == 0 ? 0 : (double) skipped / total;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSkippedMutations() {
+        return skippedMutations.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueueSize() {
+        return pipeline == null ? 0 : pipeline.getQueueSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueuedUpdates() {
+        return queuedUpdates.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getCoalescedUpdatesRatio() {
+        long coalesced = coalescedUpdates.get();
+        long total = coalesced + queuedUpdates.get();
+        return total == 0 ? 0 : (double) coalesced / total;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getProcessedTasks() {
+        return pipeline == null ? 0 : pipeline.getProcessedTasks();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMeanBatchSize() {
+        return pipeline == null ? 0 : pipeline.getMeanBatchSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getProducerWaitMicros() {
+        return pipeline == null ? 0 : pipeline.getProducerWaitMicros();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueueWaitMeanMicros() {
+        return pipeline == null ? 0 : pipeline.getQueueWaitMeanMicros();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getProcessingMeanMicros() {
+        return pipeline == null ? 0 : pipeline.getProcessingMeanMicros();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCommitRequests() {
+        return committer.getRequests();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getGroupCommits() {
+        return committer.getCommits();
+    }
+
+    /**
+     * Unregisters the JMX MBean.
+     */
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while removing MBean");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public interface IndexingStatsMBean {
+
+    /**
+     * Returns the number of indexed mutations that have required reading their rows from the storage engine.
+     *
+     * @return The number of read before write mutations.
+     */
+    long getReads();
+
+    /**
+     * Returns the number of indexed mutations that have been indexed without reading their rows, because they already
+     * contained all the mapped columns and no stored version of them could be newer.
+     *
+     * @return The number of read free mutations.
+     */
+    long getSkippedReads();
+
+    /**
+     * Returns the ratio of indexed mutations that have been indexed without reading their rows.
+     *
+     * @return The ratio of read free mutations, between {@code 0} and {@code 1}.
+     */
+    double getSkippedReadsRatio();
+
+    /**
+     * Returns the number of mutations that have not been indexed because they don't contain any mapped column
+     * and all their rows already existed.
+     *
+     * @return The number of skipped mutations.
+     */
+    long getSkippedMutations();
+
+    /**
+     * Returns the number of asynchronous indexing tasks waiting in the indexing queues.
+     *
+     * @return The number of queued indexing tasks.
+     */
+    long getQueueSize();
+
+    /**
+     * Returns the number of asynchronous updates that have been queued as new indexing tasks.
+     *
+     * @return The number of queued updates.
+     */
+    long getQueuedUpdates();
+
+    /**
+     * Returns the number of asynchronous updates that have been merged into an already queued update of the same
+     * partition.
+     *
+     * @return The number of coalesced updates.
+     */
+    long getCoalescedUpdates();
+
+    /**
+     * Returns the ratio of asynchronous updates that have been merged into an already queued update.
+     *
+     * @return The ratio of coalesced updates, between {@code 0} and {@code 1}.
+     */
+    double getCoalescedUpdatesRatio();
+
+    /**
+     * Returns the number of asynchronous indexing tasks that have been run.
+     *
+     * @return The number of run indexing tasks.
+     */
+    long getProcessedTasks();
+
+    /**
+     * Returns the mean number of asynchronous indexing tasks run by a worker thread without parking.
+     *
+     * @return The mean number of indexing tasks per batch.
+     */
+    double getMeanBatchSize();
+
+    /**
+     * Returns the total time that the writing threads have been blocked waiting for room in the indexing queues, in
+     * microseconds.
+     *
+     * @return The total blocking time of the writing threads in microseconds.
+     */
+    long getProducerWaitMicros();
+
+    /**
+     * Returns the mean time that the asynchronous indexing tasks have waited in the queues, in microseconds.
+     *
+     * @return The mean queue waiting time in microseconds.
+     */
+    long getQueueWaitMeanMicros();
+
+    /**
+     * Returns the mean time spent running an asynchronous indexing task, in microseconds.
+     *
+     * @return The mean indexing task running time in microseconds.
+     */
+    long getProcessingMeanMicros();
+
+    /**
+     * Returns the number of commit requests, such as those done when the indexed table is flushed.
+     *
+     * @return The number of commit requests.
+     */
+    long getCommitRequests();
+
+    /**
+     * Returns the number of commits run on behalf of one or more commit requests.
+     *
+     * @return The number of group commits.
+     */
+    long getGroupCommits();
+}
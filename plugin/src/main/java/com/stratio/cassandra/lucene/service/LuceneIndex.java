@@ -17,6 +17,7 @@ package com.stratio.cassandra.lucene.service;
 
 import com.stratio.cassandra.lucene.util.Log;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
@@ -28,12 +29,16 @@ import org.apache.lucene.index.TrackingIndexWriter;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.NRTCachingDirectory;
@@ -44,8 +49,11 @@ import javax.management.OperationsException;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class wrapping a Lucene directory and its readers, writers and searchers for NRT.
@@ -70,10 +78,29 @@ public class LuceneIndex implements LuceneIndexMBean {
     private SearcherManager searcherManager;
     private ControlledRealTimeReopenThread<IndexSearcher> searcherReopener;
     private Runnable refreshCallback;
+    private final LRUQueryCache filterCache;
+    private final ExecutorService searchExecutor;
+    private QueryCachingPolicy filterCachingPolicy;
 
     private Sort sort;
     private ObjectName objectName;
 
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private volatile long maxCommitNanos;
+
+    /** The max number of different filters to be cached. */
+    private static final int MAX_CACHED_FILTERS = 1000;
+
+    /**
+     * The version of the layout of the indexed documents. Version 1, used by indexes without version, stores the keys
+     * as strings, while version 2 stores them as binary terms and doc values.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /** The commit user data key of the layout version of the indexed documents. */
+    static final String FORMAT_VERSION_KEY = "format_version";
+
     static {
         BooleanQuery.setMaxClauseCount(Integer.MAX_VALUE);
     }
@@ -88,6 +115,7 @@ public class LuceneIndex implements LuceneIndexMBean {
      * @param ramBufferMB     The index writer buffer size in MB.
      * @param maxMergeMB      NRTCachingDirectory max merge size in MB.
      * @param maxCachedMB     NRTCachingDirectory max cached MB.
+     * @param filterCacheMB   The max size in MB of the cached filter doc id sets, where {@code 0} means no caching.
      * @param analyzer        The default {@link Analyzer}.
      * @param refreshSeconds  The index readers refresh time in seconds. Writings are not visible until this time.
      * @param refreshCallback A runnable to be run on index refresh.
@@ -99,9 +127,52 @@ public class LuceneIndex implements LuceneIndexMBean {
                        Integer ramBufferMB,
                        Integer maxMergeMB,
                        Integer maxCachedMB,
+                       Integer filterCacheMB,
                        Analyzer analyzer,
                        Double refreshSeconds,
                        Runnable refreshCallback) {
+        this(keyspace,
+             table,
+             name,
+             path,
+             ramBufferMB,
+             maxMergeMB,
+             maxCachedMB,
+             filterCache(filterCacheMB),
+             null,
+             analyzer,
+             refreshSeconds,
+             refreshCallback);
+    }
+
+    /**
+     * Builds a new {@code RowDirectory} using the specified directory path, analyzer, filter cache and search executor.
+     *
+     * @param keyspace        The keyspace name.
+     * @param table           The table name.
+     * @param name            The index name.
+     * @param path            The path of the directory in where the Lucene files will be stored.
+     * @param ramBufferMB     The index writer buffer size in MB.
+     * @param maxMergeMB      NRTCachingDirectory max merge size in MB.
+     * @param maxCachedMB     NRTCachingDirectory max cached MB.
+     * @param filterCache     The filter cache, maybe shared with other indexes, {@code null} means no caching.
+     * @param searchExecutor  The executor for searching segments concurrently, {@code null} means no concurrency.
+     * @param analyzer        The default {@link Analyzer}.
+     * @param refreshSeconds  The index readers refresh time in seconds. Writings are not visible until this time.
+     * @param refreshCallback A runnable to be run on index refresh.
+     */
+    LuceneIndex(String keyspace,
+                String table,
+                String name,
+                Path path,
+                Integer ramBufferMB,
+                Integer maxMergeMB,
+                Integer maxCachedMB,
+                LRUQueryCache filterCache,
+                ExecutorService searchExecutor,
+                Analyzer analyzer,
+                Double refreshSeconds,
+                Runnable refreshCallback) {
         this.keyspace = keyspace;
         this.table = table;
         this.name = name;
@@ -110,18 +181,32 @@ public class LuceneIndex implements LuceneIndexMBean {
         this.ramBufferMB = ramBufferMB;
         this.maxMergeMB = maxMergeMB;
         this.maxCachedMB = maxCachedMB;
+        this.filterCache = filterCache;
+        this.searchExecutor = searchExecutor;
         this.analyzer = analyzer;
         this.refreshCallback = refreshCallback;
         this.logName = String.format("Lucene index %s.%s.%s", keyspace, table, name);
     }
 
     /**
-     * Initializes this using the specified {@link Sort} for trying to keep the {@link Document}s sorted.
+     * Returns a new filter cache with the specified max size in MB.
+     *
+     * @param filterCacheMB The max size in MB of the cached filter doc id sets, where {@code 0} means no caching.
+     * @return A new filter cache, or {@code null} if {@code filterCacheMB} is {@code 0}.
+     */
+    static LRUQueryCache filterCache(int filterCacheMB) {
+        return filterCacheMB > 0 ? new LRUQueryCache(MAX_CACHED_FILTERS, filterCacheMB * 1024L * 1024L) : null;
+    }
+
+    /**
+     * Initializes this using the specified {@link Sort} for trying to keep the {@link Document}s sorted. If the index
+     * contains documents with another format version, they are removed, and the index must be rebuilt.
      *
      * @param sort The {@link Sort} to be used.
+     * @return {@code true} if the documents of another format version have been removed, {@code false} otherwise.
      * @throws IOException If Lucene throws IO errors.
      */
-    public void init(Sort sort) throws IOException {
+    public boolean init(Sort sort) throws IOException {
         Log.debug("Initializing index");
         this.sort = sort;
 
@@ -137,12 +222,34 @@ public class LuceneIndex implements LuceneIndexMBean {
         config.setMergePolicy(new TieredMergePolicy());
         indexWriter = new IndexWriter(directory, config);
 
+        // Remove documents indexed with another layout, they can't be neither found nor updated
+        int formatVersion = formatVersion(indexWriter.getCommitData());
+        boolean upgraded = formatVersion != FORMAT_VERSION && indexWriter.numDocs() > 0;
+        if (upgraded) {
+            Log.warn("%s has format version %d instead of %d, so its documents are removed to be rebuilt",
+                     logName,
+                     formatVersion,
+                     FORMAT_VERSION);
+            indexWriter.deleteAll();
+        }
+        indexWriter.setCommitData(Collections.singletonMap(FORMAT_VERSION_KEY, String.valueOf(FORMAT_VERSION)));
+        commitWriter();
+
+        // Setup filter cache, whose per-segment entries survive readers reopening
+        if (filterCache != null) {
+            filterCachingPolicy = new UsageTrackingQueryCachingPolicy();
+        }
+
         // Setup NRT search
         SearcherFactory searcherFactory = new SearcherFactory() {
             public IndexSearcher newSearcher(IndexReader reader) throws IOException {
                 LuceneIndex.this.refreshCallBack();
-                IndexSearcher searcher = new IndexSearcher(reader);
+                IndexSearcher searcher = new SlicedIndexSearcher(reader, searchExecutor);
                 searcher.setSimilarity(new NoIDFSimilarity());
+                searcher.setQueryCache(filterCache);
+                if (filterCachingPolicy != null) {
+                    searcher.setQueryCachingPolicy(filterCachingPolicy);
+                }
                 return searcher;
             }
         };
@@ -165,6 +272,18 @@ public class LuceneIndex implements LuceneIndexMBean {
         } catch (MBeanException | OperationsException e) {
             Log.error(e, "Error while registering MBean");
         }
+        return upgraded;
+    }
+
+    /**
+     * Returns the layout version of the documents of an index with the specified commit user data.
+     *
+     * @param commitData The commit user data of an index.
+     * @return The layout version of the documents of the index.
+     */
+    static int formatVersion(Map<String, String> commitData) {
+        String version = commitData.get(FORMAT_VERSION_KEY);
+        return version == null ? 1 : Integer.parseInt(version);
     }
 
     private void refreshCallBack() {
@@ -224,10 +343,45 @@ public class LuceneIndex implements LuceneIndexMBean {
      */
     @Override
     public void commit() throws IOException {
-        indexWriter.commit();
+        commitWriter();
         Log.info("%s committed", logName);
     }
 
+    /**
+     * Commits the index writer, which syncs the new index files to disk, recording the commit latency.
+     *
+     * @throws IOException If Lucene throws IO errors.
+     */
+    private void commitWriter() throws IOException {
+        long startTime = System.nanoTime();
+        indexWriter.commit();
+        long elapsed = System.nanoTime() - startTime;
+        commits.incrementAndGet();
+        commitNanos.addAndGet(elapsed);
+        synchronized (commits) {
+            maxCommitNanos = Math.max(maxCommitNanos, elapsed);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCommitMeanMicros() {
+        long count = commits.get();
+        return count == 0 ? 0 : commitNanos.get() / count / 1000;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCommitMaxMicros() {
+        return maxCommitNanos / 1000;
+    }
+
     /**
      * Commits all changes to the index, waits for pending merges to complete, and closes all associated resources.
      *
@@ -238,6 +392,9 @@ public class LuceneIndex implements LuceneIndexMBean {
         searcherManager.close();
         indexWriter.close();
         directory.close();
+        if (filterCache != null) {
+            filterCache.clear();
+        }
         try {
             ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
         } catch (MBeanException | OperationsException e) {
@@ -265,43 +422,50 @@ public class LuceneIndex implements LuceneIndexMBean {
      * Finds the top {@code count} hits for {@code query}, applying {@code clusteringKeyFilter} if non-null, and sorting
      * the hits by the criteria in {@code sortFields}.
      *
+     * Both relevance and custom sorts are tie-broken by the natural primary key order, so the position of any hit is
+     * fully determined by its sort values instead of its volatile Lucene document id. This way, the returned {@link
+     * ScoreDoc}s can be used as {@code after} cursors even with searchers opened after index refreshes.
+     *
      * @param searcher      The {@link IndexSearcher} to be used.
      * @param query         The {@link Query} to search for.
      * @param sort          The {@link Sort} to be applied.
-     * @param after         The starting {@link SearchResult}.
+     * @param after         The starting {@link ScoreDoc}.
      * @param count         Return only the top {@code count} results.
-     * @param fieldsToLoad  The name of the fields to be loaded.
      * @param usesRelevance If the search must sorts results by relevance.
-     * @return The found documents, sorted according to the supplied {@link Sort} instance.
+     * @return The found hits, sorted according to the supplied {@link Sort} instance.
      * @throws IOException If Lucene throws IO errors.
      */
-    public LinkedHashMap<Document, ScoreDoc> search(IndexSearcher searcher,
-                                                    Query query,
-                                                    Sort sort,
-                                                    ScoreDoc after,
-                                                    Integer count,
-                                                    Set<String> fieldsToLoad,
-                                                    boolean usesRelevance) throws IOException {
+    public ScoreDoc[] search(IndexSearcher searcher,
+                             Query query,
+                             Sort sort,
+                             ScoreDoc after,
+                             Integer count,
+                             boolean usesRelevance) throws IOException {
         Log.debug("%s search by query %s", logName, query);
 
-        TopDocs topDocs;
+        Sort fullSort;
         if (sort != null) {
-            topDocs = searcher.searchAfter(after, query, count, sort);
+            fullSort = new Sort(ArrayUtils.addAll(sort.getSort(), this.sort.getSort()));
         } else if (usesRelevance) {
-            topDocs = searcher.searchAfter(after, query, count);
+            fullSort = new Sort(ArrayUtils.addAll(new SortField[]{SortField.FIELD_SCORE}, this.sort.getSort()));
         } else {
-            topDocs = searcher.searchAfter(after, query, count, this.sort);
-        }
-        ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-
-        // Collect the documents from query result
-        LinkedHashMap<Document, ScoreDoc> searchResults = new LinkedHashMap<>();
-        for (ScoreDoc scoreDoc : scoreDocs) {
-            Document document = searcher.doc(scoreDoc.doc, fieldsToLoad);
-            searchResults.put(document, scoreDoc);
+            fullSort = this.sort;
         }
+        TopDocs topDocs = searcher.searchAfter(after, query, count, fullSort, usesRelevance, false);
+        return topDocs.scoreDocs;
+    }
 
-        return searchResults;
+    /**
+     * Returns the {@link Document} identified by the specified Lucene document id, loading only the specified fields.
+     *
+     * @param searcher     The {@link IndexSearcher} to be used.
+     * @param docId        The Lucene document id.
+     * @param fieldsToLoad The name of the fields to be loaded.
+     * @return The {@link Document} identified by {@code docId}.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public Document document(IndexSearcher searcher, int docId, Set<String> fieldsToLoad) throws IOException {
+        return searcher.doc(docId, fieldsToLoad);
     }
 
     /**
@@ -321,6 +485,16 @@ public class LuceneIndex implements LuceneIndexMBean {
         }
     }
 
+    /**
+     * Returns the version of the layout of the indexed {@link Document}s.
+     *
+     * @return The version of the layout of the indexed {@link Document}s.
+     */
+    @Override
+    public int getFormatVersion() {
+        return FORMAT_VERSION;
+    }
+
     /**
      * Returns the total number of deleted {@link Document}s in this index.
      *
@@ -338,6 +512,36 @@ public class LuceneIndex implements LuceneIndexMBean {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheHits() {
+        return filterCache == null ? 0 : filterCache.getHitCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheMisses() {
+        return filterCache == null ? 0 : filterCache.getMissCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheEvictions() {
+        return filterCache == null ? 0 : filterCache.getEvictionCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheSize() {
+        return filterCache == null ? 0 : filterCache.getCacheSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheBytes() {
+        return filterCache == null ? 0 : filterCache.ramBytesUsed();
+    }
+
     /**
      * Optimizes the index forcing merge segments leaving the specified number of segments. This operation may block
      * until all merging completes.
@@ -350,7 +554,7 @@ public class LuceneIndex implements LuceneIndexMBean {
     public void forceMerge(int maxNumSegments, boolean doWait) throws IOException {
         Log.info("%s merging index segments to %d", logName, maxNumSegments);
         indexWriter.forceMerge(maxNumSegments, doWait);
-        indexWriter.commit();
+        commitWriter();
         Log.info("%s segments merge completed", logName);
     }
 
@@ -365,7 +569,7 @@ public class LuceneIndex implements LuceneIndexMBean {
     public void forceMergeDeletes(boolean doWait) throws IOException {
         Log.info("%s merging index segments with deletions", logName);
         indexWriter.forceMergeDeletes(doWait);
-        indexWriter.commit();
+        commitWriter();
         Log.info("%s merging index segments with deletions completed", logName);
     }
 
@@ -14,6 +14,27 @@ public interface LuceneIndexMBean {
      */
     void commit() throws IOException;
 
+    /**
+     * Returns the number of Lucene commits, each one syncing the new index files to disk.
+     *
+     * @return The number of Lucene commits.
+     */
+    long getCommits();
+
+    /**
+     * Returns the mean duration of the Lucene commits, in microseconds.
+     *
+     * @return The mean commit latency in microseconds.
+     */
+    long getCommitMeanMicros();
+
+    /**
+     * Returns the max duration of the Lucene commits, in microseconds.
+     *
+     * @return The max commit latency in microseconds.
+     */
+    long getCommitMaxMicros();
+
     /**
      * Returns the total number of {@link org.apache.lucene.document.Document}s in this index.
      *
@@ -22,6 +43,13 @@ public interface LuceneIndexMBean {
      */
     long getNumDocs() throws IOException;
 
+    /**
+     * Returns the version of the layout of the indexed {@link org.apache.lucene.document.Document}s.
+     *
+     * @return The version of the layout of the indexed {@link org.apache.lucene.document.Document}s.
+     */
+    int getFormatVersion();
+
     /**
      * Returns the total number of deleted {@link org.apache.lucene.document.Document}s in this index.
      *
@@ -30,6 +58,41 @@ public interface LuceneIndexMBean {
      */
     long getNumDeletedDocs() throws IOException;
 
+    /**
+     * Returns the number of times that a filter has been found in the per-segment filter cache.
+     *
+     * @return The number of filter cache hits.
+     */
+    long getFilterCacheHits();
+
+    /**
+     * Returns the number of times that a cacheable filter has not been found in the per-segment filter cache.
+     *
+     * @return The number of filter cache misses.
+     */
+    long getFilterCacheMisses();
+
+    /**
+     * Returns the number of per-segment filter doc id sets that have been evicted from the cache.
+     *
+     * @return The number of filter cache evictions.
+     */
+    long getFilterCacheEvictions();
+
+    /**
+     * Returns the number of per-segment filter doc id sets currently cached.
+     *
+     * @return The number of cached filter doc id sets.
+     */
+    long getFilterCacheSize();
+
+    /**
+     * Returns the memory used by the filter cache, in bytes.
+     *
+     * @return The memory used by the filter cache, in bytes.
+     */
+    long getFilterCacheBytes();
+
     /**
      * Optimizes the index forcing merge segments leaving the specified number of segments. This operation may block
      * until all merging completes.
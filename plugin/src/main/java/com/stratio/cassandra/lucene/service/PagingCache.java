@@ -15,11 +15,14 @@
  */
 package com.stratio.cassandra.lucene.service;
 
+import com.google.common.base.Objects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.stratio.cassandra.lucene.search.Search;
+import com.stratio.cassandra.lucene.util.Log;
 import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.DataRange.Paging;
+import org.apache.cassandra.db.IndexExpression;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.RowPosition;
 import org.apache.cassandra.db.composites.Composite;
@@ -27,85 +30,193 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 
 import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Cache remembering Lucene {@link Query} positions associated to Cassandra {@link Row}s.
  *
+ * The cached positions are the last {@link ScoreDoc}s of each page. Since the searches are always tie-broken by the
+ * natural primary key order, these positions are fully determined by their sort values, so they remain valid across
+ * index refreshes and the cache doesn't need to be cleared each time a new searcher is opened. However, their document
+ * ids depend on the index shards that were searched, so they are only returned for searchers of the same shards.
+ *
+ * The cache also remembers the range queries of the first pages, so the following pages can be searched within the
+ * original range even if their positions are not cached.
+ *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
 public class PagingCache {
 
-    private static final Character KEY_SEPARATOR = '@';
+    /** The {@link Paging} field containing the first clustering key of the page, {@code null} if not available. */
+    private static final Field START_NAME_FIELD = startNameField();
 
-    private final Cache<String, Entry> cache;
+    private final Cache<Key, Entry> cache;
+    private final Cache<Key, Query> rangeQueries;
 
     public PagingCache(int size) {
-        cache = CacheBuilder.newBuilder().maximumSize(size).concurrencyLevel(1).build();
+        cache = CacheBuilder.newBuilder().maximumSize(size).build();
+        rangeQueries = CacheBuilder.newBuilder().maximumSize(size).build();
     }
 
-    public Entry get(Search search, DataRange dataRange) {
-        if (dataRange instanceof Paging) {
-            try {
-                String key = key(search, (Paging) dataRange);
-                return cache.getIfPresent(key);
-            } catch (ReflectiveOperationException e) {
-                return null;
+    public Entry get(Search search, List<IndexExpression> expressions, DataRange dataRange, BitSet shards) {
+        if (dataRange instanceof Paging && START_NAME_FIELD != null) {
+            Paging paging = (Paging) dataRange;
+            Composite startName = startName(paging);
+            if (startName != null) {
+                Key key = new Key(search.toString(), expressions, paging.startKey(), paging.stopKey(), startName);
+                Entry entry = cache.getIfPresent(key);
+                if (entry != null && entry.shards.equals(shards)) {
+                    return entry;
+                }
             }
         }
         return null;
     }
 
-    public void put(Search search, DataRange dataRange, Query query, ScoredRow scoredRow) {
-        if (dataRange instanceof Paging) {
-            Row row = scoredRow.getRow();
-            String key = key(search, (Paging) dataRange, row);
-            Entry entry = new Entry(scoredRow.getScoreDoc(), query);
-            cache.put(key, entry);
+    public void put(Search search,
+                    List<IndexExpression> expressions,
+                    DataRange dataRange,
+                    BitSet shards,
+                    Query query,
+                    ScoredRow... scoredRows) {
+        if (dataRange instanceof Paging && START_NAME_FIELD != null) {
+            String searchString = search.toString();
+            RowPosition stopKey = dataRange.stopKey();
+            for (ScoredRow scoredRow : scoredRows) {
+                if (scoredRow != null) {
+                    Row row = scoredRow.getRow();
+                    Composite startName = row.cf.getReverseSortedColumns().iterator().next().name();
+                    Key key = new Key(searchString, expressions, row.key, stopKey, startName);
+                    cache.put(key, new Entry(scoredRow.getScoreDoc(), shards, query));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the range {@link Query} of the first page of the paging containing the specified {@link DataRange}, as
+     * remembered by {@link #putRangeQuery(Search, List, DataRange, Query)}.
+     *
+     * @param search      The paged {@link Search}.
+     * @param expressions The filtering {@link IndexExpression}s.
+     * @param dataRange   The {@link DataRange} of a following page.
+     * @return The range {@link Query} of the first page, or {@code null} if it is not cached.
+     */
+    public Query getRangeQuery(Search search, List<IndexExpression> expressions, DataRange dataRange) {
+        Key key = new Key(search.toString(), expressions, null, dataRange.stopKey(), null);
+        return rangeQueries.getIfPresent(key);
+    }
+
+    /**
+     * Remembers the range {@link Query} of the specified first page {@link DataRange}, so the following pages can be
+     * searched within the original range. The following pages have the same stop position.
+     *
+     * @param search      The paged {@link Search}.
+     * @param expressions The filtering {@link IndexExpression}s.
+     * @param dataRange   The {@link DataRange} of a first page.
+     * @param rangeQuery  The range {@link Query} of {@code dataRange}.
+     */
+    public void putRangeQuery(Search search, List<IndexExpression> expressions, DataRange dataRange, Query rangeQuery) {
+        if (dataRange instanceof Paging && rangeQuery != null) {
+            Key key = new Key(search.toString(), expressions, null, dataRange.stopKey(), null);
+            rangeQueries.put(key, rangeQuery);
         }
     }
 
     public void clear() {
         cache.invalidateAll();
+        rangeQueries.invalidateAll();
     }
 
-    private String key(Search search, Paging paging, Row row) {
-        RowPosition startKey = row.key;
-        RowPosition stopKey = paging.stopKey();
-        Composite startName = row.cf.getReverseSortedColumns().iterator().next().name();
-        return key(search, startKey, stopKey, startName);
+    /**
+     * Returns the first clustering key of the specified {@link Paging}, that is, the last one of the previous page.
+     *
+     * @param paging A {@link Paging}.
+     * @return The first clustering key of {@code paging}, or {@code null} if it can't be accessed.
+     */
+    static Composite startName(Paging paging) {
+        if (START_NAME_FIELD == null) {
+            return null;
+        }
+        try {
+            return (Composite) START_NAME_FIELD.get(paging);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
     }
 
-    private String key(Search search, Paging paging) throws ReflectiveOperationException {
-        RowPosition startKey = paging.startKey();
-        RowPosition stopKey = paging.stopKey();
-        Composite startName = startName(paging);
-        return key(search, startKey, stopKey, startName);
+    private static Field startNameField() {
+        try {
+            Field field = Paging.class.getDeclaredField("firstPartitionColumnStart");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | SecurityException e) {
+            Log.error(e, "Paging cache is disabled because paging start can't be accessed");
+            return null;
+        }
     }
 
-    private String key(Search search, RowPosition startKey, RowPosition stopKey, Composite startName) {
-        String hash = search.toString();
-        hash += KEY_SEPARATOR;
-        hash += startKey.hashCode();
-        hash += KEY_SEPARATOR;
-        hash += stopKey.hashCode();
-        hash += KEY_SEPARATOR;
-        hash += startName.hashCode();
-        return hash;
-    }
+    /**
+     * The identity of a page, formed by the search, the filtering expressions and the paging start and stop positions.
+     * The start positions are {@code null} for identifying a whole paging.
+     */
+    private static final class Key {
+
+        private final String search;
+        private final List<IndexExpression> expressions;
+        private final RowPosition startKey;
+        private final RowPosition stopKey;
+        private final Composite startName;
+        private final int hashCode;
+
+        Key(String search,
+            List<IndexExpression> expressions,
+            RowPosition startKey,
+            RowPosition stopKey,
+            Composite startName) {
+            this.search = search;
+            this.expressions = expressions;
+            this.startKey = startKey;
+            this.stopKey = stopKey;
+            this.startName = startName;
+            this.hashCode = Objects.hashCode(search, expressions, startKey, stopKey, startName);
+        }
 
-    private Composite startName(Paging paging) throws ReflectiveOperationException {
-        Field field = paging.getClass().getDeclaredField("firstPartitionColumnStart");
-        field.setAccessible(true);
-        return (Composite) field.get(paging);
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashCode == key.hashCode &&
+                   search.equals(key.search) &&
+                   expressions.equals(key.expressions) &&
+                   Objects.equal(startKey, key.startKey) &&
+                   stopKey.equals(key.stopKey) &&
+                   Objects.equal(startName, key.startName);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 
     public static class Entry {
 
-        private ScoreDoc scoreDoc;
-        private Query query;
+        private final ScoreDoc scoreDoc;
+        private final BitSet shards;
+        private final Query query;
 
-        public Entry(ScoreDoc scoreDoc, Query query) {
+        public Entry(ScoreDoc scoreDoc, BitSet shards, Query query) {
             this.scoreDoc = scoreDoc;
+            this.shards = shards;
             this.query = query;
         }
 
@@ -17,22 +17,27 @@ package com.stratio.cassandra.lucene.service;
 
 import com.stratio.cassandra.lucene.schema.column.Column;
 import com.stratio.cassandra.lucene.schema.column.Columns;
+import com.stratio.cassandra.lucene.util.BinaryTermField;
 import com.stratio.cassandra.lucene.util.ByteBufferUtils;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.BufferDecoratedKey;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.Field.Store;
-import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -82,9 +87,9 @@ public class PartitionKeyMapper {
      * @param partitionKey The raw partition key to be converted.
      */
     public void addFields(Document document, DecoratedKey partitionKey) {
-        String serializedKey = ByteBufferUtils.toString(partitionKey.getKey());
-        Field field = new StringField(FIELD_NAME, serializedKey, Store.YES);
-        document.add(field);
+        BytesRef bytesRef = ByteBufferUtils.bytesRef(partitionKey.getKey());
+        document.add(new BinaryTermField(FIELD_NAME, bytesRef));
+        document.add(new BinaryDocValuesField(FIELD_NAME, bytesRef));
     }
 
     /**
@@ -94,8 +99,7 @@ public class PartitionKeyMapper {
      * @return The specified raw partition key as a Lucene {@link Term}.
      */
     public Term term(DecoratedKey partitionKey) {
-        String serializedKey = ByteBufferUtils.toString(partitionKey.getKey());
-        return new Term(FIELD_NAME, serializedKey);
+        return new Term(FIELD_NAME, ByteBufferUtils.bytesRef(partitionKey.getKey()));
     }
 
     /**
@@ -109,15 +113,19 @@ public class PartitionKeyMapper {
     }
 
     /**
-     * Returns the {@link DecoratedKey} contained in the specified Lucene {@link Document}.
+     * Returns the {@link DecoratedKey} of the specified document, read from the doc values of the specified segment
+     * reader and decorated with the specified already known {@link Token}.
      *
-     * @param document the {@link Document} containing the partition key to be get.
-     * @return The {@link DecoratedKey} contained in the specified Lucene {@link Document}.
+     * @param reader A Lucene segment reader.
+     * @param docId  The document id inside {@code reader}.
+     * @param token  The {@link Token} of the partition key.
+     * @return The {@link DecoratedKey} of the specified document.
+     * @throws IOException If Lucene throws IO errors.
      */
-    public DecoratedKey partitionKey(Document document) {
-        String string = document.get(FIELD_NAME);
-        ByteBuffer partitionKey = ByteBufferUtils.fromString(string);
-        return partitionKey(partitionKey);
+    public DecoratedKey partitionKey(LeafReader reader, int docId, Token token) throws IOException {
+        BinaryDocValues docValues = reader.getBinaryDocValues(FIELD_NAME);
+        BytesRef bytesRef = docValues.get(docId);
+        return new BufferDecoratedKey(token, ByteBufferUtils.byteBuffer(bytesRef));
     }
 
     /**
@@ -17,13 +17,89 @@ package com.stratio.cassandra.lucene.service;
 
 import org.apache.cassandra.db.Row;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * A {@link Comparator} for comparing {@link Row}s according to a certain criterion.
  *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
-public interface RowComparator extends Comparator<Row> {
+public abstract class RowComparator implements Comparator<Row> {
 
+    /**
+     * Returns the specified {@link Row}s sorted according to this comparator, taking advantage of the already sorted
+     * runs they are made of, such as the concatenated responses of several replicas or token ranges. The maximal
+     * ascending runs are detected and then merged using a heap, so sorting {@code n} rows made of {@code k} runs takes
+     * {@code O(n log k)} comparisons.
+     *
+     * @param rows The {@link Row}s to be sorted.
+     * @return The specified {@link Row}s sorted according to this comparator.
+     */
+    public List<Row> merge(List<Row> rows) {
+        return merge(rows, this);
+    }
+
+    /**
+     * Returns the specified items sorted according to the specified {@link Comparator}, merging their ascending runs
+     * with a heap. Items that are equal according to the comparator keep their relative order.
+     *
+     * @param items      The items to be sorted.
+     * @param comparator The {@link Comparator} to be used.
+     * @param <T>        The type of the items.
+     * @return The specified items sorted according to {@code comparator}.
+     */
+    protected static <T> List<T> merge(final List<T> items, final Comparator<? super T> comparator) {
+
+        // Find the ascending runs
+        int size = items.size();
+        List<Run> runs = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || comparator.compare(items.get(i - 1), items.get(i)) > 0) {
+                runs.add(new Run(runs.size(), start, i));
+                start = i;
+            }
+        }
+        if (runs.size() <= 1) {
+            return new ArrayList<>(items);
+        }
+
+        // Merge the runs taking always the least head, or the one of the first run in case of tie
+        PriorityQueue<Run> heap = new PriorityQueue<>(runs.size(), new Comparator<Run>() {
+            @Override
+            public int compare(Run run1, Run run2) {
+                int comparison = comparator.compare(items.get(run1.position), items.get(run2.position));
+                return comparison == 0 ? Integer.compare(run1.index, run2.index) : comparison;
+            }
+        });
+        heap.addAll(runs);
+        List<T> merged = new ArrayList<>(size);
+        while (!heap.isEmpty()) {
+            Run run = heap.poll();
+            merged.add(items.get(run.position++));
+            if (run.position < run.end) {
+                heap.add(run);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A sorted run of a list, defined by its current and end positions.
+     */
+    private static final class Run {
+
+        private final int index; // The run position among all the runs
+        private final int end; // The run end position, exclusive
+        private int position; // The position of the run head
+
+        private Run(int index, int start, int end) {
+            this.index = index;
+            this.position = start;
+            this.end = end;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.db.Row;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link RowComparator} based on a sort key that is expensive to extract from a {@link Row}. When sorting or merging
+ * lists of rows, the sort key of each row is extracted only once.
+ *
+ * @param <K> The type of the sort key.
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public abstract class RowComparatorKeyed<K> extends RowComparator {
+
+    /** The comparator of rows decorated with their sort keys. */
+    private final Comparator<KeyedRow<K>> keyedRowComparator = new Comparator<KeyedRow<K>>() {
+        @Override
+        public int compare(KeyedRow<K> keyedRow1, KeyedRow<K> keyedRow2) {
+            return compareKeys(keyedRow1.key, keyedRow2.key);
+        }
+    };
+
+    /**
+     * Returns the sort key of the specified {@link Row}.
+     *
+     * @param row A {@link Row}.
+     * @return The sort key of {@code row}.
+     */
+    protected abstract K key(Row row);
+
+    /**
+     * Compares the two specified sort keys.
+     *
+     * @param key1 A sort key.
+     * @param key2 Another sort key.
+     * @return A negative integer, zero, or a positive integer as the first key is less than, equal to, or greater than
+     * the second.
+     */
+    protected abstract int compareKeys(K key1, K key2);
+
+    /** {@inheritDoc} */
+    @Override
+    public int compare(Row row1, Row row2) {
+        return compareKeys(key(row1), key(row2));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Row> merge(List<Row> rows) {
+        List<KeyedRow<K>> keyedRows = merge(decorate(rows), keyedRowComparator);
+        List<Row> result = new ArrayList<>(keyedRows.size());
+        for (KeyedRow<K> keyedRow : keyedRows) {
+            result.add(keyedRow.row);
+        }
+        return result;
+    }
+
+    private List<KeyedRow<K>> decorate(List<Row> rows) {
+        List<KeyedRow<K>> keyedRows = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            keyedRows.add(new KeyedRow<>(key(row), row));
+        }
+        return keyedRows;
+    }
+
+    /**
+     * A {@link Row} decorated with its sort key.
+     *
+     * @param <K> The type of the sort key.
+     */
+    private static final class KeyedRow<K> {
+
+        private final K key;
+        private final Row row;
+
+        private KeyedRow(K key, Row row) {
+            this.key = key;
+            this.row = row;
+        }
+    }
+}
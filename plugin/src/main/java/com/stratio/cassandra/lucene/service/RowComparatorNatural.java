@@ -28,7 +28,7 @@ import java.util.Comparator;
  *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
-public class RowComparatorNatural implements RowComparator {
+public class RowComparatorNatural extends RowComparator {
 
     private final ComparatorChain<Row> comparatorChain;
 
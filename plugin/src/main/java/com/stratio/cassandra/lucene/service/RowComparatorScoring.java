@@ -17,12 +17,16 @@ package com.stratio.cassandra.lucene.service;
 
 import org.apache.cassandra.db.Row;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * A {@link RowComparator} for comparing {@link Row}s according to its Lucene scoring.
  *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
-public class RowComparatorScoring implements RowComparator {
+public class RowComparatorScoring extends RowComparatorKeyed<Float> {
 
     /**
      * The used {@link RowService}.
@@ -38,14 +42,73 @@ public class RowComparatorScoring implements RowComparator {
         this.rowService = rowService;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected Float key(Row row) {
+        return rowService.score(row);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Higher scores go first.
+     */
+    @Override
+    protected int compareKeys(Float score1, Float score2) {
+        return Float.compare(score2, score1);
+    }
+
     /**
      * {@inheritDoc}
+     *
+     * The score of each {@link Row} is decoded only once, and the rows are sorted over primitives instead of merging
+     * their runs. The result is the same because rows with the same score keep their relative order.
      */
     @Override
-    public int compare(Row row1, Row row2) {
-        Float score1 = rowService.score(row1);
-        Float score2 = rowService.score(row2);
-        return score2.compareTo(score1);
+    public List<Row> merge(List<Row> rows) {
+        int size = rows.size();
+        float[] scores = new float[size];
+        for (int i = 0; i < size; i++) {
+            scores[i] = rowService.score(rows.get(i));
+        }
+        int[] positions = order(scores);
+        List<Row> result = new ArrayList<>(size);
+        for (int position : positions) {
+            result.add(rows.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the positions of the specified scores sorted by descending score. Each position is packed in a {@code
+     * long} together with its score, so the sort is done over primitives and equal scores keep their relative order.
+     *
+     * @param scores The scores to be sorted.
+     * @return The positions of {@code scores} sorted by descending score.
+     */
+    static int[] order(float[] scores) {
+        int size = scores.length;
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) ~sortableBits(scores[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = (int) keys[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the bits of the specified {@code float} as an {@code int} that keeps the same sign and order.
+     *
+     * @param value A {@code float}.
+     * @return An {@code int} with the same order as {@code value}.
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
     }
 
 }
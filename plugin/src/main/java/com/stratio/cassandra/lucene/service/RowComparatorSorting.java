@@ -28,7 +28,7 @@ import java.util.Comparator;
  *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
-class RowComparatorSorting implements RowComparator {
+class RowComparatorSorting extends RowComparatorKeyed<Columns> {
 
     private final RowMapper rowMapper;
     private final ComparatorChain<Columns> comparatorChain;
@@ -49,15 +49,23 @@ class RowComparatorSorting implements RowComparator {
     /**
      * {@inheritDoc}
      *
-     * @param row1 A {@link Row}.
-     * @param row2 A {@link Row}.
+     * The sort key is made of the {@link Columns} of the {@link Row}.
+     */
+    @Override
+    protected Columns key(Row row) {
+        return rowMapper.columns(row);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param columns1 The {@link Columns} of a {@link Row}.
+     * @param columns2 The {@link Columns} of another {@link Row}.
      * @return A negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
      * than the second according to a Lucene {@link Sort}.
      */
     @Override
-    public int compare(Row row1, Row row2) {
-        Columns columns1 = rowMapper.columns(row1);
-        Columns columns2 = rowMapper.columns(row2);
+    protected int compareKeys(Columns columns1, Columns columns2) {
         return comparatorChain.compare(columns1, columns2);
     }
 }
@@ -17,20 +17,53 @@ package com.stratio.cassandra.lucene.service;
 
 import com.stratio.cassandra.lucene.schema.Schema;
 import com.stratio.cassandra.lucene.schema.column.Columns;
+import com.stratio.cassandra.lucene.schema.mapping.DoubleMapper;
+import com.stratio.cassandra.lucene.schema.mapping.FloatMapper;
+import com.stratio.cassandra.lucene.schema.mapping.IntegerMapper;
+import com.stratio.cassandra.lucene.schema.mapping.LongMapper;
+import com.stratio.cassandra.lucene.schema.mapping.Mapper;
+import com.stratio.cassandra.lucene.schema.mapping.StringMapper;
+import com.stratio.cassandra.lucene.search.condition.Condition;
+import com.stratio.cassandra.lucene.search.condition.RangeCondition;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.Cell;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionInfo;
+import org.apache.cassandra.db.ExpiringCell;
+import org.apache.cassandra.db.IndexExpression;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.filter.ColumnSlice;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.Token;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Class for several {@link Row} mappings between Cassandra and Lucene.
@@ -47,6 +80,10 @@ public abstract class RowMapper {
     final PartitionKeyMapper partitionKeyMapper; // A partition key mapper for the indexed table
     final RegularCellsMapper regularCellsMapper; // A regular cell mapper for the indexed table
 
+    private final Set<ColumnIdentifier> mappedColumns; // The regular columns consumed by the schema
+    private final boolean mapsMultiCellColumns; // If any of the mapped columns is a not frozen collection
+    private final Set<ColumnIdentifier> unmappedColumns; // The regular and static columns not consumed by the schema
+
     /**
      * Builds a new {@link RowMapper} for the specified column family metadata, indexed column definition and {@link
      * Schema}.
@@ -62,6 +99,23 @@ public abstract class RowMapper {
         this.tokenMapper = TokenMapper.instance();
         this.partitionKeyMapper = PartitionKeyMapper.instance(metadata);
         this.regularCellsMapper = RegularCellsMapper.instance(metadata);
+
+        Set<String> mappedColumnNames = schema.getMappedColumns();
+        this.mappedColumns = new HashSet<>();
+        this.unmappedColumns = new HashSet<>();
+        boolean mapsMultiCellColumns = false;
+        for (ColumnDefinition definition : metadata.regularColumns()) {
+            if (mappedColumnNames.contains(definition.name.toString())) {
+                mappedColumns.add(definition.name);
+                mapsMultiCellColumns |= definition.type.isMultiCell();
+            } else {
+                unmappedColumns.add(definition.name);
+            }
+        }
+        for (ColumnDefinition definition : metadata.staticColumns()) {
+            unmappedColumns.add(definition.name);
+        }
+        this.mapsMultiCellColumns = mapsMultiCellColumns;
     }
 
     /**
@@ -99,23 +153,133 @@ public abstract class RowMapper {
     public abstract Document document(Row row);
 
     /**
-     * Returns the decorated partition key representing the specified raw partition key.
+     * Returns if the specified mutation {@link ColumnFamily} could change the indexed {@link Document}s. Mutations
+     * containing only live cells of not mapped columns can't change them, unless they contain row markers or they
+     * belong to a table without CQL3 row markers. Note that even these mutations create the CQL3 rows that don't exist
+     * yet, so they can be skipped only if their rows are known to be already indexed, as told by
+     * {@link #containsRows(ColumnFamily, ColumnFamily)}.
      *
-     * @param key A partition key.
-     * @return The decorated partition key representing the specified raw partition key.
+     * @param columnFamily A mutation {@link ColumnFamily}.
+     * @return {@code true} if {@code columnFamily} could change the index, {@code false} otherwise.
      */
-    public final DecoratedKey partitionKey(ByteBuffer key) {
-        return partitionKeyMapper.partitionKey(key);
+    public final boolean affectsIndex(ColumnFamily columnFamily) {
+        if (!metadata.isCQL3Table() || !columnFamily.deletionInfo().isLive()) {
+            return true;
+        }
+        boolean empty = true;
+        for (Cell cell : columnFamily) {
+            if (!cell.isLive() || !unmappedColumns.contains(cell.name().cql3ColumnName(metadata))) {
+                return true;
+            }
+            empty = false;
+        }
+        return empty;
+    }
+
+    /**
+     * Returns if all the logical rows written by the specified mutation {@link ColumnFamily} are contained in the
+     * specified stored {@link ColumnFamily} with any live cell not written by the mutation, so they existed before it
+     * and they have already been indexed.
+     *
+     * @param storedColumnFamily A stored {@link ColumnFamily} of the same partition.
+     * @param columnFamily       A mutation {@link ColumnFamily}.
+     * @return {@code true} if all the rows in {@code columnFamily} existed in {@code storedColumnFamily} before it.
+     */
+    public final boolean containsRows(ColumnFamily storedColumnFamily, ColumnFamily columnFamily) {
+        CellNameType cellNameType = metadata.comparator;
+        int numRows = 0;
+        CellName rowName = null;
+        for (Cell cell : columnFamily) {
+            CellName cellName = cell.name();
+            if (!cellName.isStatic() && (rowName == null || !isSameRow(cellNameType, rowName, cellName))) {
+                rowName = cellName;
+                numRows++;
+            }
+        }
+        if (numRows == 0) {
+            return true;
+        }
+        DeletionInfo deletionInfo = storedColumnFamily.deletionInfo();
+        int numContainedRows = 0;
+        rowName = null;
+        Iterator<Cell> iterator = storedColumnFamily.iterator(columnSlices(columnFamily));
+        while (iterator.hasNext()) {
+            Cell cell = iterator.next();
+            CellName cellName = cell.name();
+            if (!cellName.isStatic()
+                && cell.isLive()
+                && !deletionInfo.isDeleted(cell)
+                && !cell.equals(columnFamily.getColumn(cellName))
+                && (rowName == null || !isSameRow(cellNameType, rowName, cellName))) {
+                rowName = cellName;
+                numContainedRows++;
+            }
+        }
+        return numContainedRows == numRows;
     }
 
     /**
-     * Returns the decorated partition key contained in the specified {@link Document}.
+     * Returns the {@link ColumnSlice}s selecting the logical rows contained in the specified {@link ColumnFamily}.
      *
-     * @param document A {@link Document}.
-     * @return The decorated partition key contained in the specified {@link Document}.
+     * @param columnFamily A {@link ColumnFamily}.
+     * @return The {@link ColumnSlice}s selecting the logical rows contained in {@code columnFamily}.
      */
-    public final DecoratedKey partitionKey(Document document) {
-        return partitionKeyMapper.partitionKey(document);
+    public abstract ColumnSlice[] columnSlices(ColumnFamily columnFamily);
+
+    /**
+     * Returns if the specified {@link ColumnFamily} contains all the data required to index the logical rows contained
+     * in it, so they can be indexed without reading them from the storage engine. This happens when it contains live
+     * not expiring cells for all the mapped columns of each row, without any kind of deletion. Mapped collections are
+     * never complete because their mutations could contain just some of their elements.
+     *
+     * @param columnFamily A mutation {@link ColumnFamily}.
+     * @return {@code true} if the rows in {@code columnFamily} can be indexed without reading, {@code false} otherwise.
+     */
+    public final boolean isComplete(ColumnFamily columnFamily) {
+        if (mapsMultiCellColumns || !columnFamily.deletionInfo().isLive()) {
+            return false;
+        }
+        CellNameType cellNameType = metadata.comparator;
+        int numMappedColumns = mappedColumns.size();
+        Set<ColumnIdentifier> rowColumns = new HashSet<>(numMappedColumns);
+        CellName rowName = null;
+        for (Cell cell : columnFamily) {
+            CellName cellName = cell.name();
+            if (!cell.isLive() || cell instanceof ExpiringCell || cellName.isStatic()) {
+                return false;
+            }
+            if (rowName == null || !isSameRow(cellNameType, rowName, cellName)) {
+                if (rowName != null && rowColumns.size() < numMappedColumns) {
+                    return false;
+                }
+                rowColumns.clear();
+                rowName = cellName;
+            }
+            ColumnIdentifier column = cellName.cql3ColumnName(metadata);
+            if (mappedColumns.contains(column)) {
+                rowColumns.add(column);
+            }
+        }
+        return rowName != null && rowColumns.size() == numMappedColumns;
+    }
+
+    private static boolean isSameRow(CellNameType cellNameType, CellName cellName1, CellName cellName2) {
+        for (int i = 0; i < cellNameType.clusteringPrefixSize(); i++) {
+            if (cellNameType.subtype(i).compare(cellName1.get(i), cellName2.get(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the decorated partition key representing the specified raw partition key.
+     *
+     * @param key A partition key.
+     * @return The decorated partition key representing the specified raw partition key.
+     */
+    public final DecoratedKey partitionKey(ByteBuffer key) {
+        return partitionKeyMapper.partitionKey(key);
     }
 
     /**
@@ -136,6 +300,79 @@ public abstract class RowMapper {
      */
     public abstract Query query(DataRange dataRange);
 
+    /**
+     * Returns the Lucene {@link Query} to get the {@link Document}s from the specified lower {@link Token} up to the
+     * stop bound of the specified {@link DataRange}, ignoring its start bound. This is used for resuming searches not
+     * sorted by token, whose remaining hits can be placed before the start of the paged range, but not before the
+     * start of the original range.
+     *
+     * @param lower        The lower accepted {@link Token}.
+     * @param includeLower If {@code lower} is included in the range.
+     * @param dataRange    A {@link DataRange}.
+     * @return The Lucene {@link Query} to get the {@link Document}s from {@code lower} up to the stop bound of {@code
+     * dataRange}.
+     */
+    public abstract Query stopQuery(Token lower, boolean includeLower, DataRange dataRange);
+
+    /**
+     * Returns the {@link Condition} equivalent to the specified filtering {@link IndexExpression}, or {@code null} if
+     * the index can't answer it with the same semantics used by Cassandra. This happens when the expression column is
+     * not mapped, or when its {@link Mapper} doesn't keep the ordering of the column's type.
+     *
+     * @param expression A filtering {@link IndexExpression}.
+     * @return The {@link Condition} equivalent to {@code expression}, or {@code null} if there is no such condition.
+     */
+    public Condition condition(IndexExpression expression) {
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(expression.column);
+        if (columnDefinition == null) {
+            return null;
+        }
+        String name = columnDefinition.name.toString();
+        Mapper mapper = schema.getMapper(name);
+        AbstractType<?> type = columnDefinition.type;
+        if (mapper == null || !mapper.isIndexed() || !keepsOrdering(mapper, type)) {
+            return null;
+        }
+        Object value = type.compose(expression.value);
+        switch (expression.operator) {
+            case EQ:
+                return new RangeCondition(null, name, value, value, true, true);
+            case GT:
+                return new RangeCondition(null, name, value, null, false, false);
+            case GTE:
+                return new RangeCondition(null, name, value, null, true, false);
+            case LT:
+                return new RangeCondition(null, name, null, value, false, false);
+            case LTE:
+                return new RangeCondition(null, name, null, value, false, true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified {@link Mapper} indexes the values of the specified Cassandra type keeping
+     * both its equality and its ordering, {@code false} otherwise.
+     *
+     * @param mapper A {@link Mapper}.
+     * @param type   A Cassandra type.
+     * @return {@code true} if {@code mapper} keeps the equality and ordering of {@code type}, {@code false} otherwise.
+     */
+    private static boolean keepsOrdering(Mapper mapper, AbstractType<?> type) {
+        if (mapper instanceof StringMapper) {
+            return ((StringMapper) mapper).isCaseSensitive() && (type instanceof UTF8Type || type instanceof AsciiType);
+        } else if (mapper instanceof IntegerMapper) {
+            return type instanceof Int32Type;
+        } else if (mapper instanceof LongMapper) {
+            return type instanceof LongType;
+        } else if (mapper instanceof FloatMapper) {
+            return type instanceof FloatType;
+        } else if (mapper instanceof DoubleMapper) {
+            return type instanceof DoubleType;
+        }
+        return false;
+    }
+
     /**
      * Returns the Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
      *
@@ -151,6 +388,25 @@ public abstract class RowMapper {
      */
     public abstract CellName makeCellName(ColumnFamily columnFamily);
 
+    /**
+     * Returns a {@link ByteBuffer} uniquely identifying the specified logical {@link Row} in the indexed table.
+     *
+     * @param row A {@link Row}.
+     * @return A {@link ByteBuffer} uniquely identifying {@code row}.
+     */
+    public abstract ByteBuffer rowKey(Row row);
+
+    /**
+     * Returns the Lucene {@link Term} identifying the {@link Document} of the logical row containing the specified
+     * partition key and cell name.
+     *
+     * @param partitionKey A decorated partition key.
+     * @param cellName     A cell name, maybe empty.
+     * @return The Lucene {@link Term} identifying the row, or {@code null} if the cell name is not enough to identify
+     * it.
+     */
+    public abstract Term term(DecoratedKey partitionKey, Composite cellName);
+
     /**
      * Returns a {@link RowComparator} using the same order that is used in Cassandra.
      *
@@ -159,12 +415,42 @@ public abstract class RowMapper {
     public abstract RowComparator naturalComparator();
 
     /**
-     * Returns the {@link SearchResult} defined by the specified {@link Document} and {@link ScoreDoc}.
+     * Decodes the row keys of all the hits in the specified {@link HitBuffer}. The row keys are read from the doc values
+     * of each hit segment, visiting the hits in document id order.
+     *
+     * @param reader The top level {@link IndexReader} used in the search.
+     * @param hits   The hits whose keys are to be decoded.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public final void decodeKeys(IndexReader reader, HitBuffer hits) throws IOException {
+
+        // Sort hit positions by document id, packing both values in a long
+        int size = hits.size();
+        long[] docsAndPositions = new long[size];
+        for (int i = 0; i < size; i++) {
+            docsAndPositions[i] = ((long) hits.doc(i) << 32) | i;
+        }
+        Arrays.sort(docsAndPositions);
+
+        // Read keys walking the segments forward
+        List<LeafReaderContext> leaves = reader.leaves();
+        for (long docAndPosition : docsAndPositions) {
+            int position = (int) docAndPosition;
+            int doc = hits.doc(position);
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+            decodeKeys(leaf.reader(), doc - leaf.docBase, hits, position);
+        }
+    }
+
+    /**
+     * Decodes the row keys of the specified segment document into the specified position of a {@link HitBuffer}.
      *
-     * @param document A {@link Document}.
-     * @param scoreDoc A {@link ScoreDoc}.
-     * @return The {@link SearchResult} defined by the specified {@link Document} and {@link ScoreDoc}.
+     * @param reader   The segment {@link LeafReader} containing the document.
+     * @param docId    The document id inside {@code reader}.
+     * @param hits     The {@link HitBuffer} to be filled.
+     * @param position The position of the document in {@code hits}.
+     * @throws IOException If Lucene throws IO errors.
      */
-    public abstract SearchResult searchResult(Document document, ScoreDoc scoreDoc);
+    protected abstract void decodeKeys(LeafReader reader, int docId, HitBuffer hits, int position) throws IOException;
 
 }
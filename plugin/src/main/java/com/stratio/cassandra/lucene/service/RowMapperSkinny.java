@@ -26,14 +26,19 @@ import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.RowPosition;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.filter.ColumnSlice;
 import org.apache.cassandra.db.filter.IDiskAtomFilter;
 import org.apache.cassandra.db.filter.SliceQueryFilter;
 import org.apache.cassandra.dht.Token;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * {@link RowMapper} for skinny rows.
  *
@@ -110,6 +115,24 @@ public class RowMapperSkinny extends RowMapper {
         return tokenMapper.query(startToken, stopToken, includeStart, includeStop);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Query stopQuery(Token lower, boolean includeLower, DataRange dataRange) {
+        RowPosition stopPosition = dataRange.stopKey();
+        Token stopToken = stopPosition.getToken();
+        return tokenMapper.query(lower, stopToken, includeLower, tokenMapper.includeStop(stopPosition));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ColumnSlice[] columnSlices(ColumnFamily columnFamily) {
+        return ColumnSlice.ALL_COLUMNS_ARRAY;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -118,6 +141,26 @@ public class RowMapperSkinny extends RowMapper {
         return metadata.comparator.makeCellName(columnDefinition.name.bytes);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * This is the partition key.
+     */
+    @Override
+    public ByteBuffer rowKey(Row row) {
+        return row.key.getKey();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The cell name is ignored because the partition key is enough to identify the row.
+     */
+    @Override
+    public Term term(DecoratedKey partitionKey, Composite cellName) {
+        return term(partitionKey);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,8 +173,9 @@ public class RowMapperSkinny extends RowMapper {
      * {@inheritDoc}
      */
     @Override
-    public SearchResult searchResult(Document document, ScoreDoc scoreDoc) {
-        DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
-        return new SearchResult(partitionKey, null, scoreDoc);
+    protected void decodeKeys(LeafReader reader, int docId, HitBuffer hits, int position) throws IOException {
+        Token token = tokenMapper.token(reader, docId);
+        DecoratedKey partitionKey = partitionKeyMapper.partitionKey(reader, docId, token);
+        hits.setKeys(position, partitionKey, null);
     }
 }
@@ -33,14 +33,16 @@ import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -122,6 +124,16 @@ public class RowMapperWide extends RowMapper {
         return clusteringKeyMapper.makeCellName(clusteringKey, columnDefinition);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * This is the full row key formed by the partition and clustering keys.
+     */
+    @Override
+    public ByteBuffer rowKey(Row row) {
+        return fullKeyMapper.byteBuffer(row.key, clusteringKey(row.cf));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -163,6 +175,17 @@ public class RowMapperWide extends RowMapper {
         return fullKeyMapper.term(partitionKey, clusteringKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Term term(DecoratedKey partitionKey, Composite cellName) {
+        if (cellName.isEmpty()) {
+            return null;
+        }
+        return term(partitionKey, clusteringKeyMapper.clusteringKey(cellName));
+    }
+
     /**
      * Returns the Lucene {@link Query} to get the {@link Document}s satisfying the specified {@link DataRange}.
      *
@@ -216,6 +239,28 @@ public class RowMapperWide extends RowMapper {
         return query.getClauses().length == 0 ? null : query;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Query stopQuery(Token lower, boolean includeLower, DataRange dataRange) {
+        RowPosition stopPosition = dataRange.stopKey();
+        Token stopToken = stopPosition.getToken();
+        if (stopPosition instanceof DecoratedKey) {
+            ByteBuffer key = ((DecoratedKey) stopPosition).getKey();
+            Composite stopName = ((SliceQueryFilter) dataRange.columnFilter(key)).finish();
+            if (!stopName.isEmpty()) {
+                BooleanQuery query = new BooleanQuery();
+                BooleanQuery q = new BooleanQuery();
+                q.add(tokenMapper.query(stopToken), MUST);
+                q.add(clusteringKeyMapper.query(null, stopName), MUST);
+                query.add(q, SHOULD);
+                Query rangeQuery = tokenMapper.query(lower, stopToken, includeLower, false);
+                if (rangeQuery != null) query.add(rangeQuery, SHOULD);
+                return query;
+            }
+        }
+        return tokenMapper.query(lower, stopToken, includeLower, tokenMapper.includeStop(stopPosition));
+    }
+
     /**
      * Returns the Lucene {@link Query} to get the {@link Document}s satisfying the specified partition key and {@link
      * RangeTombstone}.
@@ -244,6 +289,38 @@ public class RowMapperWide extends RowMapper {
         return clusteringKeyMapper.columnSlices(clusteringKeys);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ColumnSlice[] columnSlices(ColumnFamily columnFamily) {
+        return columnSlices(clusteringKeys(columnFamily));
+    }
+
+    /**
+     * Returns the {@link ColumnSlice} for selecting all the logic CQL3 rows between the specified clustering keys, both
+     * inclusive.
+     *
+     * @param first The first clustering key according to the table cell name comparator.
+     * @param last  The last clustering key according to the table cell name comparator.
+     * @return The {@link ColumnSlice} for selecting all the logic CQL3 rows between {@code first} and {@code last}.
+     */
+    public ColumnSlice columnSlice(CellName first, CellName last) {
+        return clusteringKeyMapper.columnSlice(first, last);
+    }
+
+    /**
+     * Compares the clustering keys of the specified cell names, ignoring any other cell name component.
+     *
+     * @param cellName1 A cell name.
+     * @param cellName2 Another cell name.
+     * @return A negative integer, zero, or a positive integer as the clustering key of {@code cellName1} is less than,
+     * equal to, or greater than the clustering key of {@code cellName2}.
+     */
+    public int compareClusteringKeys(CellName cellName1, CellName cellName2) {
+        return clusteringKeyMapper.compareClusteringKeys(cellName1, cellName2);
+    }
+
     /**
      * Returns the logical CQL3 column families contained in the specified physical {@link ColumnFamily}.
      *
@@ -268,13 +345,10 @@ public class RowMapperWide extends RowMapper {
      * {@inheritDoc}
      */
     @Override
-    public SearchResult searchResult(Document document, ScoreDoc scoreDoc) {
-        DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
-        CellName clusteringKey = clusteringKeyMapper.clusteringKey(document);
-        return new SearchResult(partitionKey, clusteringKey, scoreDoc);
-    }
-
-    public String hash(DecoratedKey partitionKey, CellName cellName) {
-        return fullKeyMapper.hash(partitionKey, cellName);
+    protected void decodeKeys(LeafReader reader, int docId, HitBuffer hits, int position) throws IOException {
+        Token token = tokenMapper.token(reader, docId);
+        DecoratedKey partitionKey = partitionKeyMapper.partitionKey(reader, docId, token);
+        CellName clusteringKey = clusteringKeyMapper.clusteringKey(reader, docId);
+        hits.setKeys(position, partitionKey, clusteringKey);
     }
 }
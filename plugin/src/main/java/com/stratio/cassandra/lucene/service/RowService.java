@@ -15,42 +15,77 @@
  */
 package com.stratio.cassandra.lucene.service;
 
+import com.google.common.collect.AbstractIterator;
 import com.stratio.cassandra.lucene.IndexConfig;
 import com.stratio.cassandra.lucene.schema.Schema;
 import com.stratio.cassandra.lucene.schema.column.Column;
 import com.stratio.cassandra.lucene.schema.column.Columns;
 import com.stratio.cassandra.lucene.search.Search;
+import com.stratio.cassandra.lucene.search.condition.Condition;
+import com.stratio.cassandra.lucene.util.GroupCommitter;
+import com.stratio.cassandra.lucene.util.IndexingLog;
+import com.stratio.cassandra.lucene.util.IndexingPipeline;
 import com.stratio.cassandra.lucene.util.Log;
-import com.stratio.cassandra.lucene.util.TaskQueue;
 import com.stratio.cassandra.lucene.util.TimeCounter;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.db.ArrayBackedSortedColumns;
 import org.apache.cassandra.db.Cell;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DataRange.Paging;
+import org.apache.cassandra.db.DataTracker;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.Memtable;
 import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.Composite;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.UTF8Type;
-import org.apache.lucene.document.Document;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.locator.TokenMetadata;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class for mapping rows between Cassandra and Lucene.
@@ -59,20 +94,50 @@ import java.util.Set;
  */
 public abstract class RowService {
 
+    /** The type of the indexing log records representing an update. */
+    private static final byte INDEX_RECORD = 0;
+
+    /** The type of the indexing log records representing a partition deletion. */
+    private static final byte DELETE_RECORD = 1;
+
     /** The max number of rows to be read per iteration. */
-    private static final int MAX_PAGE_SIZE = 100000;
+    private static final int MAX_PAGE_SIZE = 10000;
+
+    /** The min number of rows to be read per iteration when no hits have been accepted yet. */
     private static final int FILTERING_PAGE_SIZE = 1000;
 
+    /** The margin applied to the estimated number of hits required to get the remaining rows. */
+    private static final double PAGE_SIZE_MARGIN = 1.2;
+
     final ColumnFamilyStore baseCfs;
     final RowMapper rowMapper;
     final CFMetaData metadata;
-    final LuceneIndex luceneIndex;
+    final ShardedLuceneIndex luceneIndex;
 
     private final Schema schema;
-    private final TaskQueue indexQueue;
+    /** The asynchronous indexing pipeline, maybe {@code null} meaning synchronous indexing. */
+    private final IndexingPipeline indexQueue;
+
+    /** The log of asynchronous updates not committed yet, maybe {@code null} meaning no logging. */
+    private final IndexingLog indexingLog;
+
+    /** The coordinator of the commit requests, grouping the concurrent ones. */
+    private final GroupCommitter committer;
+
+    /** The queued asynchronous updates that can still absorb newer updates of the same partition. */
+    private final ConcurrentMap<ByteBuffer, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
 
     private final PagingCache pagingCache;
 
+    /** The cache of parsed searches and compiled queries. */
+    private final SearchCache searchCache;
+
+    /** The statistics of the write path. */
+    protected final IndexingStats indexingStats;
+
+    /** The thread pool for reading the rows matched by a search, maybe {@code null} meaning sequential reading. */
+    private final ExecutorService collectingPool;
+
     /**
      * Returns a new {@code RowService}.
      *
@@ -90,29 +155,66 @@ public abstract class RowService {
         this.rowMapper = RowMapper.build(metadata, columnDefinition, schema);
 
         this.pagingCache = new PagingCache(config.getPagingCacheSize());
-
-        this.luceneIndex = new LuceneIndex(columnDefinition.ksName,
+        this.searchCache = new SearchCache(columnDefinition.ksName,
                                            columnDefinition.cfName,
                                            columnDefinition.getIndexName(),
-                                           config.getPath(),
-                                           config.getRamBufferMB(),
-                                           config.getMaxMergeMB(),
-                                           config.getMaxCachedMB(),
-                                           schema.getAnalyzer(),
-                                           config.getRefreshSeconds(),
-                                           new Runnable() {
-                                               @Override
-                                               public void run() {
-                                                   pagingCache.clear();
-                                               }
-                                           });
+                                           schema,
+                                           config.getSearchCacheSize());
+
+        this.luceneIndex = new ShardedLuceneIndex(columnDefinition.ksName,
+                                                  columnDefinition.cfName,
+                                                  columnDefinition.getIndexName(),
+                                                  config.getPath(),
+                                                  config.getRamBufferMB(),
+                                                  config.getMaxMergeMB(),
+                                                  config.getMaxCachedMB(),
+                                                  config.getFilterCacheMB(),
+                                                  schema.getAnalyzer(),
+                                                  config.getRefreshSeconds(),
+                                                  rowMapper.tokenMapper,
+                                                  config.getShards(),
+                                                  config.getSearchingThreads());
 
         int indexingThreads = config.getIndexingThreads();
         if (indexingThreads > 0) {
-            this.indexQueue = new TaskQueue(indexingThreads, config.getIndexingQueuesSize());
+            String threadsName = String.format("LuceneIndexer:%s.%s", metadata.ksName, metadata.cfName);
+            this.indexQueue = new IndexingPipeline(threadsName, indexingThreads, config.getIndexingQueuesSize());
         } else {
             this.indexQueue = null;
         }
+
+        if (indexQueue != null && config.getIndexingLog()) {
+            try {
+                boolean batchSync = DatabaseDescriptor.getCommitLogSync() == Config.CommitLogSync.batch;
+                long syncPeriodMs = batchSync ? 0 : DatabaseDescriptor.getCommitLogSyncPeriod();
+                this.indexingLog = new IndexingLog(config.getIndexingLogPath(), syncPeriodMs);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            this.indexingLog = null;
+        }
+
+        this.committer = new GroupCommitter(new GroupCommitter.Commit() {
+            @Override
+            public void run() throws IOException {
+                doCommit();
+            }
+        }, config.getMaxCommitDelayMs());
+
+        this.indexingStats = new IndexingStats(columnDefinition.ksName,
+                                               columnDefinition.cfName,
+                                               columnDefinition.getIndexName(),
+                                               indexQueue,
+                                               committer);
+
+        int collectingThreads = config.getCollectingThreads();
+        if (collectingThreads > 0) {
+            String threadsName = String.format("LuceneCollector:%s.%s", metadata.ksName, metadata.cfName);
+            this.collectingPool = Executors.newFixedThreadPool(collectingThreads, new NamedThreadFactory(threadsName));
+        } else {
+            this.collectingPool = null;
+        }
     }
 
     /**
@@ -125,13 +227,87 @@ public abstract class RowService {
      */
     public static RowService build(ColumnFamilyStore baseCfs, ColumnDefinition columnDefinition) throws IOException {
         int clusteringPosition = baseCfs.metadata.clusteringColumns().size();
+        RowService rowService;
         if (clusteringPosition > 0) {
-            return new RowServiceWide(baseCfs, columnDefinition);
+            rowService = new RowServiceWide(baseCfs, columnDefinition);
         } else {
-            return new RowServiceSkinny(baseCfs, columnDefinition);
+            rowService = new RowServiceSkinny(baseCfs, columnDefinition);
+        }
+        rowService.replay();
+        return rowService;
+    }
+
+    /**
+     * Initializes the Lucene index using the specified {@link Sort}. If the index contained documents of an older
+     * format version, they have been removed, so the index is marked as not built to be rebuilt by Cassandra right
+     * after its initialization.
+     *
+     * @param sort             The {@link Sort} to be used.
+     * @param columnDefinition The indexed column definition.
+     * @throws IOException If there are I/O errors.
+     */
+    protected final void init(Sort sort, ColumnDefinition columnDefinition) throws IOException {
+        if (luceneIndex.init(sort)) {
+            String indexName = columnDefinition.getIndexName() + ByteBufferUtil.string(columnDefinition.name.bytes);
+            SystemKeyspace.setIndexRemoved(metadata.ksName, indexName);
+            Log.info("Index %s will be rebuilt because of its format upgrade", indexName);
         }
     }
 
+    /**
+     * Applies the updates contained in the indexing log, if any, which were not committed before the last shutdown.
+     *
+     * @throws IOException If there are I/O errors.
+     */
+    private void replay() throws IOException {
+        if (indexingLog != null) {
+            long count = indexingLog.replay(new IndexingLog.RecordHandler() {
+                @Override
+                public void handle(byte[] record) throws IOException {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                    byte type = in.readByte();
+                    int version = in.readInt();
+                    ByteBuffer key = ByteBufferUtil.readWithShortLength(in);
+                    if (type == INDEX_RECORD) {
+                        long timestamp = in.readLong();
+                        ColumnFamily columnFamily = ColumnFamily.serializer.deserialize(in, version);
+                        doIndex(key, columnFamily, timestamp);
+                    } else {
+                        doDelete(rowMapper.partitionKey(key));
+                    }
+                }
+            });
+            if (count > 0) {
+                luceneIndex.commit();
+                Log.info("Replayed %d updates from the indexing log of %s.%s", count, metadata.ksName, metadata.cfName);
+            }
+            indexingLog.discard(indexingLog.rotate());
+        }
+    }
+
+    /**
+     * Returns the indexing log record representing the specified update or partition deletion.
+     *
+     * @param type         The type of the record.
+     * @param key          The partition key.
+     * @param columnFamily The updated column family, {@code null} for deletions.
+     * @param timestamp    The operation time stamp.
+     * @return The indexing log record.
+     * @throws IOException If there are I/O errors.
+     */
+    private static byte[] record(byte type, ByteBuffer key, ColumnFamily columnFamily, long timestamp)
+    throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        out.writeByte(type);
+        out.writeInt(MessagingService.current_version);
+        ByteBufferUtil.writeWithShortLength(key, out);
+        if (columnFamily != null) {
+            out.writeLong(timestamp);
+            ColumnFamily.serializer.serialize(columnFamily, out, MessagingService.current_version);
+        }
+        return out.toByteArray();
+    }
+
     /**
      * Returns the used {@link Schema}.
      *
@@ -142,17 +318,23 @@ public abstract class RowService {
     }
 
     /**
-     * Returns the names of the document fields to be loaded when reading a Lucene index.
+     * Returns the used {@link SearchCache}.
      *
-     * @return The names of the document fields to be loaded.
+     * @return The used {@link SearchCache}.
      */
-    protected abstract Set<String> fieldsToLoad();
+    public final SearchCache getSearchCache() {
+        return searchCache;
+    }
 
     /**
      * Indexes the logical {@link Row} identified by the specified key and column family using the specified time stamp.
-     * The must be read from the {@link ColumnFamilyStore} because it could exist previously having more columns than
-     * the specified ones. The specified {@link ColumnFamily} is used for determine the cluster key. This operation is
-     * performed asynchronously.
+     * The row is read from the {@link ColumnFamilyStore} because it could exist previously having more columns than
+     * the specified ones, unless the specified {@link ColumnFamily} already contains all the mapped columns. The
+     * specified {@link ColumnFamily} is used for determine the cluster key. Mutations not affecting any mapped column
+     * are ignored if all their rows already exist, because otherwise they could be creating new rows. This operation
+     * is performed asynchronously, and the updates of a partition that are still waiting in the queue are coalesced
+     * into a single indexing task. If the indexing log is enabled, the update is appended to it before being queued,
+     * so it can be replayed if the node dies before committing it.
      *
      * @param key          A partition key.
      * @param columnFamily A {@link ColumnFamily} with a single common cluster key.
@@ -160,19 +342,100 @@ public abstract class RowService {
      * @throws IOException If there are I/O errors.
      */
     public void index(final ByteBuffer key, final ColumnFamily columnFamily, final long timestamp) throws IOException {
-        if (indexQueue == null) {
+        if (!affectsIndex(key, columnFamily)) {
+            indexingStats.skippedMutation();
+        } else if (indexQueue == null) {
             doIndex(key, columnFamily, timestamp);
+        } else if (indexingLog == null) {
+            submit(key, columnFamily, timestamp);
         } else {
-            indexQueue.submitAsynchronous(key, new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        doIndex(key, columnFamily, timestamp);
-                    } catch (Exception e) {
-                        Log.error(e, "Unrecoverable error during asynchronously indexing");
-                    }
-                }
-            });
+            IndexingLog.Segment segment = indexingLog.acquire();
+            try {
+                segment.append(record(INDEX_RECORD, key, columnFamily, timestamp));
+                submit(key, columnFamily, timestamp);
+            } finally {
+                segment.release();
+            }
+        }
+    }
+
+    /**
+     * Queues the indexing of the specified update, coalescing it with the pending update of the same partition if it is
+     * possible.
+     *
+     * @param key          The partition key.
+     * @param columnFamily The column family containing the clustering keys.
+     * @param timestamp    The operation time stamp.
+     */
+    private void submit(ByteBuffer key, ColumnFamily columnFamily, long timestamp) {
+        boolean coalescible = columnFamily.deletionInfo().isLive() && columnFamily.iterator().hasNext();
+        if (coalescible) {
+            PendingUpdate pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate != null && pendingUpdate.merge(columnFamily, timestamp)) {
+                indexingStats.coalescedUpdate();
+                return;
+            }
+        }
+        PendingUpdate update = new PendingUpdate(key, columnFamily, timestamp);
+        if (coalescible) {
+            pendingUpdates.put(key, update);
+        } else {
+            pendingUpdates.remove(key); // Newer updates can't be run before this one
+        }
+        indexingStats.queuedUpdate();
+        indexQueue.submit(key, update);
+    }
+
+    /**
+     * An asynchronous indexing task which, until it starts running, can absorb the newer updates of its partition.
+     * Coalescing is safe because the merged {@link ColumnFamily} contains the clustering keys of all the updates, and
+     * the rows are either read from the storage engine or fully contained in it.
+     */
+    private final class PendingUpdate implements Runnable {
+
+        private final ByteBuffer key;
+        private ColumnFamily columnFamily;
+        private long timestamp;
+        private boolean copied; // If the column family is a private copy that can be modified
+        private boolean started; // If the task has started running, so it can't be modified anymore
+
+        PendingUpdate(ByteBuffer key, ColumnFamily columnFamily, long timestamp) {
+            this.key = key;
+            this.columnFamily = columnFamily;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Merges the specified update into this, if it has not started running yet.
+         *
+         * @param columnFamily The newer update {@link ColumnFamily}.
+         * @param timestamp    The newer update time stamp.
+         * @return {@code true} if the update has been merged, {@code false} if this has already started.
+         */
+        synchronized boolean merge(ColumnFamily columnFamily, long timestamp) {
+            if (started) {
+                return false;
+            }
+            if (!copied) {
+                this.columnFamily = this.columnFamily.cloneMe();
+                copied = true;
+            }
+            this.columnFamily.addAll(columnFamily);
+            this.timestamp = Math.max(this.timestamp, timestamp);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                started = true;
+                pendingUpdates.remove(key, this);
+            }
+            try {
+                doIndex(key, columnFamily, timestamp);
+            } catch (Exception e) {
+                Log.error(e, "Unrecoverable error during asynchronously indexing");
+            }
         }
     }
 
@@ -187,6 +450,71 @@ public abstract class RowService {
      */
     protected abstract void doIndex(ByteBuffer key, ColumnFamily columnFamily, long timestamp) throws IOException;
 
+    /**
+     * Returns if the specified mutation {@link ColumnFamily} could change the indexed documents. Mutations containing
+     * only live cells of not mapped columns are ignored only if a memtable shows that all their rows existed before
+     * them, so they are already indexed. Otherwise, they could be creating new rows, so they are indexed.
+     *
+     * @param key          A partition key.
+     * @param columnFamily A mutation {@link ColumnFamily}.
+     * @return {@code true} if {@code columnFamily} could change the index, {@code false} otherwise.
+     */
+    private boolean affectsIndex(ByteBuffer key, ColumnFamily columnFamily) {
+        if (rowMapper.affectsIndex(columnFamily)) {
+            return true;
+        }
+        DecoratedKey partitionKey = rowMapper.partitionKey(key);
+        for (Memtable memtable : baseCfs.getDataTracker().getView().getAllMemtables()) {
+            ColumnFamily storedColumnFamily = memtable.getColumnFamily(partitionKey);
+            if (storedColumnFamily != null && rowMapper.containsRows(storedColumnFamily, columnFamily)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns if the logical rows contained in the specified mutation {@link ColumnFamily} can be indexed without
+     * reading them from the storage engine. The mutation must contain all the data required to index its rows, and
+     * none of its cells can have been superseded by a stored version. This is ensured checking that no SSTable
+     * containing the partition has a newer or equal time stamp, and that the cells in the memtables are the same or
+     * older. Otherwise, the mutation could be stale, such as hints, read repairs or writes with an old time stamp.
+     *
+     * @param partitionKey The partition key.
+     * @param columnFamily A mutation {@link ColumnFamily}.
+     * @return {@code true} if the rows in {@code columnFamily} can be indexed without reading, {@code false} otherwise.
+     */
+    protected final boolean canSkipRead(DecoratedKey partitionKey, ColumnFamily columnFamily) {
+        if (!rowMapper.isComplete(columnFamily)) {
+            return false;
+        }
+        long minTimestamp = Long.MAX_VALUE;
+        for (Cell cell : columnFamily) {
+            minTimestamp = Math.min(minTimestamp, cell.timestamp());
+        }
+        DataTracker.View view = baseCfs.getDataTracker().getView();
+        for (SSTableReader sstable : view.sstablesInBounds(new Bounds<RowPosition>(partitionKey, partitionKey))) {
+            if (sstable.getMaxTimestamp() >= minTimestamp) {
+                return false;
+            }
+        }
+        for (Memtable memtable : view.getAllMemtables()) {
+            ColumnFamily storedColumnFamily = memtable.getColumnFamily(partitionKey);
+            if (storedColumnFamily != null) {
+                for (Cell cell : columnFamily) {
+                    if (storedColumnFamily.deletionInfo().isDeleted(cell)) {
+                        return false;
+                    }
+                    Cell storedCell = storedColumnFamily.getColumn(cell.name());
+                    if (storedCell != null && storedCell.timestamp() >= cell.timestamp() && !storedCell.equals(cell)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Deletes the partition identified by the specified partition key. This operation is performed asynchronously.
      *
@@ -196,20 +524,38 @@ public abstract class RowService {
     public void delete(final DecoratedKey partitionKey) throws IOException {
         if (indexQueue == null) {
             doDelete(partitionKey);
+        } else if (indexingLog == null) {
+            submit(partitionKey);
         } else {
-            indexQueue.submitAsynchronous(partitionKey, new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        doDelete(partitionKey);
-                    } catch (Exception e) {
-                        Log.error(e, "Unrecoverable error during asynchronous deletion of %s", partitionKey);
-                    }
-                }
-            });
+            IndexingLog.Segment segment = indexingLog.acquire();
+            try {
+                segment.append(record(DELETE_RECORD, partitionKey.getKey(), null, 0));
+                submit(partitionKey);
+            } finally {
+                segment.release();
+            }
         }
     }
 
+    /**
+     * Queues the deletion of the specified partition.
+     *
+     * @param partitionKey The partition key.
+     */
+    private void submit(final DecoratedKey partitionKey) {
+        pendingUpdates.remove(partitionKey.getKey()); // Newer updates can't be run before this deletion
+        indexQueue.submit(partitionKey, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    doDelete(partitionKey);
+                } catch (Exception e) {
+                    Log.error(e, "Unrecoverable error during asynchronous deletion of %s", partitionKey);
+                }
+            }
+        });
+    }
+
     /**
      * Deletes the partition identified by the specified partition key.
      *
@@ -224,6 +570,9 @@ public abstract class RowService {
      * @throws IOException If there are I/O errors.
      */
     public final void truncate() throws IOException {
+        if (indexingLog != null) {
+            indexingLog.discard(indexingLog.rotate());
+        }
         luceneIndex.truncate();
     }
 
@@ -233,37 +582,56 @@ public abstract class RowService {
      * @throws IOException If there are I/O errors.
      */
     public final void delete() throws IOException {
+        if (indexQueue != null) {
+            indexQueue.close();
+        }
+        if (indexingLog != null) {
+            indexingLog.close();
+            FileUtils.deleteRecursive(indexingLog.getDirectory().toFile());
+        }
         luceneIndex.delete();
+        searchCache.close();
+        indexingStats.close();
         schema.close();
+        if (collectingPool != null) {
+            collectingPool.shutdownNow();
+        }
     }
 
     /**
-     * Commits the pending changes. This operation is performed asynchronously.
+     * Commits the pending changes. If indexing is asynchronous, it waits for the updates submitted before the call, but
+     * newer updates are not blocked. The concurrent commit requests share a single commit, which can be delayed up to
+     * the configured max commit delay to be shared with more requests.
      *
      * @throws IOException If there are I/O errors.
      */
     public final void commit() throws IOException {
-        if (indexQueue == null) {
-            luceneIndex.commit();
-        } else {
-            indexQueue.submitSynchronous(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        luceneIndex.commit();
-                    } catch (Exception e) {
-                        Log.error(e, "Unrecoverable error during asynchronous commit");
-                    }
-                }
-            });
+        committer.commit();
+    }
+
+    /**
+     * Commits the updates submitted before the call. The logged updates are discarded once they have been committed.
+     *
+     * @throws IOException If there are I/O errors.
+     */
+    private void doCommit() throws IOException {
+        long loggedSegment = indexingLog == null ? -1 : indexingLog.rotate();
+        if (indexQueue != null) {
+            indexQueue.await();
+        }
+        luceneIndex.commit();
+        if (indexingLog != null) {
+            indexingLog.discard(loggedSegment);
         }
     }
 
     /**
-     * Returns the stored and indexed {@link Row}s satisfying the specified restrictions.
+     * Returns the stored and indexed {@link Row}s satisfying the specified restrictions. The rows are pulled one by one
+     * from a {@link SearchIterator}, so no more Lucene documents nor Cassandra rows than needed are read.
      *
      * @param search      The {@link Search} to be performed.
-     * @param expressions A list of filtering {@link IndexExpression}s to be satisfied.
+     * @param expressions A list of filtering {@link IndexExpression}s to be satisfied. Those that can be answered by
+     *                    the index are added to the Lucene query, and all of them are checked against the read rows.
      * @param dataRange   A {@link DataRange} to be satisfied.
      * @param limit       The max number of {@link Row}s to be returned.
      * @param timestamp   The operation time stamp.
@@ -277,94 +645,346 @@ public abstract class RowService {
                                   long timestamp) throws IOException {
         Log.debug("Searching with search %s ", search);
 
-        // Setup stats
         TimeCounter searchTime = new TimeCounter();
-        TimeCounter luceneTime = new TimeCounter();
-        TimeCounter collectTime = new TimeCounter();
-        int numDocs = 0;
-        int numPages = 0;
-        int numRows = 0;
         searchTime.start();
 
-        List<ScoredRow> scoredRows = new LinkedList<>();
+        List<Row> rows = new ArrayList<>(Math.min(limit, MAX_PAGE_SIZE));
+        SearchIterator iterator;
 
-        SearcherManager searcherManager = luceneIndex.getSearcherManager();
-        IndexSearcher searcher = searcherManager.acquire();
+        // Relevance and sorted searches are not in token order, so any page can have hits before its start token,
+        // and all their pages must search the same shards to keep the document ids of the cached positions
+        Token upper = dataRange.stopKey().getToken();
+        Token lower = search.usesRelevanceOrSorting()
+                      ? DatabaseDescriptor.getPartitioner().getMinimumToken()
+                      : dataRange.startKey().getToken();
+        BitSet shards = luceneIndex.shards(lower, upper);
+        IndexSearcher searcher = luceneIndex.acquire(shards);
         try {
 
+            // Push down to Lucene the filtering expressions that can be answered by the index, just to narrow the
+            // candidates, because the index may be stale so all the expressions are still checked against the rows
+            List<Condition> conditions = new ArrayList<>(expressions.size());
+            for (IndexExpression expression : expressions) {
+                Condition condition = rowMapper.condition(expression);
+                if (condition != null) {
+                    conditions.add(condition);
+                }
+            }
+
             // Get query and last doc trying luck with paging cache
             Query query;
-            ScoreDoc last; // The last search result
-            PagingCache.Entry pagingCacheEntry = pagingCache.get(search, dataRange);
+            ScoreDoc after;
+            PagingCache.Entry pagingCacheEntry = pagingCache.get(search, expressions, dataRange, shards);
+            Term cursor = search.usesRelevanceOrSorting() ? cursor(dataRange) : null;
             if (pagingCacheEntry != null) {
                 query = pagingCacheEntry.getQuery();
-                last = pagingCacheEntry.getScoreDoc();
+                after = pagingCacheEntry.getScoreDoc();
+            } else if (cursor != null) {
+                // The hits after the cursor can be anywhere in the original range, not only after the paged start
+                Query conditionsQuery = searchCache.query(search);
+                Query rangeQuery = filterQuery(resumedRangeQuery(search, expressions, dataRange), conditions);
+                query = search.query(conditionsQuery, rangeQuery);
+                after = after(searcher, search, conditionsQuery, cursor);
             } else {
-                Query rangeQuery = rowMapper.query(dataRange);
-                query = search.query(schema, rangeQuery);
-                last = null;
+                Query conditionsQuery = searchCache.query(search);
+                Query dataRangeQuery = rowMapper.query(dataRange);
+                if (search.usesRelevanceOrSorting()) {
+                    pagingCache.putRangeQuery(search, expressions, dataRange, dataRangeQuery);
+                }
+                Query rangeQuery = filterQuery(dataRangeQuery, conditions);
+                query = search.query(conditionsQuery, rangeQuery);
+                after = null;
             }
 
-            // Setup non-cached search arguments
+            // Pull rows until there are no more or the limit is reached
             Sort sort = search.sort(schema);
             boolean relevance = search.usesRelevance();
-            int page = Math.min(limit, MAX_PAGE_SIZE);
-            boolean maybeMore;
-
-            do {
-                // Search rows identifiers in Lucene
-                luceneTime.start();
-                Set<String> fields = fieldsToLoad();
-                Map<Document, ScoreDoc> docs = luceneIndex.search(searcher, query, sort, last, page, fields, relevance);
-                List<SearchResult> searchResults = new ArrayList<>(docs.size());
-                for (Map.Entry<Document, ScoreDoc> entry : docs.entrySet()) {
-                    Document document = entry.getKey();
-                    ScoreDoc scoreDoc = entry.getValue();
-                    last = scoreDoc;
-                    searchResults.add(rowMapper.searchResult(document, scoreDoc));
-                }
-                numDocs += searchResults.size();
-                luceneTime.stop();
-
-                // Collect rows from Cassandra
-                collectTime.start();
-                for (ScoredRow scoredRow : scoredRows(searchResults, timestamp, relevance)) {
-                    if (accepted(scoredRow, expressions)) {
-                        scoredRows.add(scoredRow);
-                        numRows++;
-                    }
-                }
-                collectTime.stop();
-
-                // Setup next iteration
-                maybeMore = searchResults.size() == page;
-                page = Math.min(Math.max(FILTERING_PAGE_SIZE, numRows - limit), MAX_PAGE_SIZE);
-                numPages++;
-
-                // Iterate while there are still documents to read and we don't have enough rows
-            } while (maybeMore && scoredRows.size() < limit);
+            iterator = new SearchIterator(searcher,
+                                          query,
+                                          sort,
+                                          after,
+                                          relevance,
+                                          expressions,
+                                          limit,
+                                          timestamp);
+            ScoredRow last = null;
+            ScoredRow penultimate = null;
+            while (iterator.hasNext()) {
+                ScoredRow scoredRow = iterator.next();
+                rows.add(scoredRow.getRow());
+                penultimate = last;
+                last = scoredRow;
+            }
 
             // Cache last two results
-            if (numRows > 0) pagingCache.put(search, dataRange, query, scoredRows.get(numRows - 1));
-            if (numRows > 1) pagingCache.put(search, dataRange, query, scoredRows.get(numRows - 2));
+            pagingCache.put(search, expressions, dataRange, shards, query, last, penultimate);
 
         } finally {
-            searcherManager.release(searcher);
-        }
-
-        List<Row> rows = new ArrayList<>(numRows);
-        for (ScoredRow scoredRow : scoredRows) {
-            rows.add(scoredRow.getRow());
+            luceneIndex.release(searcher);
         }
 
         searchTime.stop();
 
-        Log.debug("Lucene time: %s", luceneTime);
-        Log.debug("Cassandra time: %s", collectTime);
-        Log.debug("Collected %d docs and %d rows in %d pages in %s", numDocs, numRows, numPages, searchTime);
+        Log.debug("Lucene time: %s", iterator.luceneTime);
+        Log.debug("Cassandra time: %s", iterator.collectTime);
+        Log.debug("Collected %d docs and %d rows in %d pages in %s",
+                  iterator.numDocs,
+                  iterator.numRows,
+                  iterator.numPages,
+                  searchTime);
+        Log.debug("Discarded %d of %d collected docs and left %d read docs uncollected",
+                  iterator.numDocs - iterator.numRows,
+                  iterator.numDocs,
+                  iterator.numHits - iterator.numDocs);
 
         return rows;
+    }
 
+    /**
+     * Returns the {@link Term} identifying the last row of the previous page of the specified paged {@link DataRange},
+     * to be used as search-after cursor when it is not in the paging cache. The row key is carried by the Cassandra
+     * paging state, so it doesn't depend on which node served the previous page. Natural order searches don't need it
+     * because the paging range itself points to the first row of the page.
+     *
+     * @param dataRange The {@link DataRange} of the requested page.
+     * @return The {@link Term} of the last row of the previous page, or {@code null} if this is the first page.
+     */
+    private Term cursor(DataRange dataRange) {
+        if (!(dataRange instanceof Paging) || !(dataRange.startKey() instanceof DecoratedKey)) {
+            return null;
+        }
+        Composite startName = PagingCache.startName((Paging) dataRange);
+        if (startName == null) {
+            return null;
+        }
+        return rowMapper.term((DecoratedKey) dataRange.startKey(), startName);
+    }
+
+    /**
+     * Returns the range {@link Query} for resuming the paging of the specified {@link Search} in the specified paged
+     * {@link DataRange}, whose position is not cached. It is the range of the first page if it is cached. Otherwise,
+     * the original range is taken from the start of the token ring range containing the paged start, because the
+     * ranges of the queries are split by the token ring, up to the paged stop.
+     *
+     * @param search      The paged {@link Search}.
+     * @param expressions The filtering {@link IndexExpression}s.
+     * @param dataRange   The {@link DataRange} of the requested page.
+     * @return The range {@link Query} of the original range of the paging, maybe {@code null} meaning no restriction.
+     */
+    private Query resumedRangeQuery(Search search, List<IndexExpression> expressions, DataRange dataRange) {
+        Query rangeQuery = pagingCache.getRangeQuery(search, expressions, dataRange);
+        if (rangeQuery != null) {
+            return rangeQuery;
+        }
+        Token start = dataRange.startKey().getToken();
+        ArrayList<Token> ring = StorageService.instance.getTokenMetadata().sortedTokens();
+        if (!ring.isEmpty()) {
+            int index = TokenMetadata.firstTokenIndex(ring, start, false);
+            Token previous = ring.get((index + ring.size() - 1) % ring.size());
+            if (previous.compareTo(start) < 0) {
+                return rowMapper.stopQuery(previous, false, dataRange);
+            }
+        }
+        return rowMapper.stopQuery(DatabaseDescriptor.getPartitioner().getMinimumToken(), true, dataRange);
+    }
+
+    /**
+     * Returns the position of the row identified by the specified cursor {@link Term} in the sort of the specified
+     * {@link Search}. If the row doesn't match the search anymore, sorted searches take the sort values of its
+     * document, while relevance searches can't know its position. If the position can't be known, the paging fails
+     * instead of returning an empty page, which would be taken as the end of the results.
+     *
+     * @param searcher        The {@link IndexSearcher} to be used.
+     * @param search          The {@link Search} to be paged.
+     * @param conditionsQuery The {@link Query} of the search conditions, maybe {@code null}.
+     * @param cursor          The {@link Term} identifying the last row of the previous page.
+     * @return The position of the last row of the previous page.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    private ScoreDoc after(IndexSearcher searcher, Search search, Query conditionsQuery, Term cursor)
+    throws IOException {
+        // Keep the same scoring structure as the page query to get the same sort values
+        Query query = search.query(conditionsQuery, new TermQuery(cursor));
+        Sort sort = search.sort(schema);
+        boolean relevance = search.usesRelevance();
+        ScoreDoc[] scoreDocs = luceneIndex.search(searcher, query, sort, null, 1, relevance);
+        if (scoreDocs.length == 0 && !relevance) {
+            scoreDocs = luceneIndex.search(searcher, new TermQuery(cursor), sort, null, 1, false);
+        }
+        if (scoreDocs.length == 0) {
+            String msg = String.format("Paging of search %s can't be resumed because the last row of the previous " +
+                                       "page has been deleted or doesn't match the search anymore", search);
+            throw new RuntimeException(msg);
+        }
+        return scoreDocs[0];
+    }
+
+    /**
+     * Returns the Lucene {@link Query} satisfying both the specified range {@link Query} and filtering {@link
+     * Condition}s.
+     *
+     * @param rangeQuery A range {@link Query}, maybe {@code null} meaning no range restriction.
+     * @param conditions The filtering {@link Condition}s to be satisfied.
+     * @return The Lucene {@link Query}, maybe {@code null} meaning no restriction at all.
+     */
+    private Query filterQuery(Query rangeQuery, List<Condition> conditions) {
+        if (conditions.isEmpty()) {
+            return rangeQuery;
+        }
+        BooleanQuery booleanQuery = new BooleanQuery();
+        if (rangeQuery != null) {
+            booleanQuery.add(rangeQuery, BooleanClause.Occur.FILTER);
+        }
+        for (Condition condition : conditions) {
+            booleanQuery.add(condition.query(schema), BooleanClause.Occur.FILTER);
+        }
+        return booleanQuery;
+    }
+
+    /**
+     * {@link Iterator} pulling {@link ScoredRow}s through the search pipeline: Lucene hits are read page by page,
+     * their keys are decoded, the matching {@link Row}s are fetched from Cassandra, and the fetched rows are filtered
+     * by the {@link IndexExpression}s. Each step is done in batches sized after the number of rows still required and
+     * the observed ratio of accepted hits, so the iteration stops as soon as {@code limit} rows have been returned, and
+     * the used memory is bounded by the Lucene page size.
+     */
+    private final class SearchIterator extends AbstractIterator<ScoredRow> {
+
+        private final IndexSearcher searcher;
+        private final Query query;
+        private final Sort sort;
+        private final boolean relevance;
+        private final List<IndexExpression> expressions;
+        private final int limit;
+        private final long timestamp;
+
+        private ScoreDoc after; // The last read Lucene hit
+        private ScoreDoc[] page; // The current page of Lucene hits
+        private int position; // The position of the next hit to be collected in the current page
+        private boolean maybeMore = true; // If there could be more Lucene hits after the current page
+        private Iterator<ScoredRow> batch = Collections.emptyIterator(); // The collected and accepted rows
+        private final HitBuffer hits = new HitBuffer(); // The reusable buffer of hits to be collected
+
+        private final TimeCounter luceneTime = new TimeCounter();
+        private final TimeCounter collectTime = new TimeCounter();
+        private int numHits; // The number of read Lucene hits
+        private int numDocs; // The number of collected Lucene hits
+        private int numPages; // The number of read Lucene pages
+        private int numRows; // The number of returned rows
+
+        private SearchIterator(IndexSearcher searcher,
+                               Query query,
+                               Sort sort,
+                               ScoreDoc after,
+                               boolean relevance,
+                               List<IndexExpression> expressions,
+                               int limit,
+                               long timestamp) {
+            this.searcher = searcher;
+            this.query = query;
+            this.sort = sort;
+            this.after = after;
+            this.relevance = relevance;
+            this.expressions = expressions;
+            this.limit = limit;
+            this.timestamp = timestamp;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected ScoredRow computeNext() {
+            try {
+                while (numRows < limit) {
+                    if (batch.hasNext()) {
+                        numRows++;
+                        return batch.next();
+                    }
+                    if (page == null || position == page.length) {
+                        if (!maybeMore) break;
+                        readPage();
+                        if (page.length == 0) break;
+                    }
+                    batch = collectBatch();
+                }
+                return endOfData();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Reads the next page of Lucene hits.
+         *
+         * @throws IOException If there are I/O errors.
+         */
+        private void readPage() throws IOException {
+            luceneTime.start();
+            int pageSize;
+            if (numPages == 0) {
+                pageSize = Math.min(limit, MAX_PAGE_SIZE);
+            } else if (numRows == 0) {
+                pageSize = Math.min(Math.max(FILTERING_PAGE_SIZE, page.length * 2), MAX_PAGE_SIZE);
+            } else {
+                pageSize = Math.min(requiredHits(), MAX_PAGE_SIZE);
+            }
+            page = luceneIndex.search(searcher, query, sort, after, pageSize, relevance);
+            position = 0;
+            maybeMore = page.length == pageSize;
+            numHits += page.length;
+            numPages++;
+            luceneTime.stop();
+        }
+
+        /**
+         * Returns the estimated number of hits to be collected to get the rows still required to reach the limit. This
+         * estimation is based on the ratio of collected hits accepted so far, which accounts both for the rows
+         * discarded by the filtering {@link IndexExpression}s and for those not found in Cassandra.
+         *
+         * @return The estimated number of hits to be collected to reach the limit.
+         */
+        private int requiredHits() {
+            int requiredRows = limit - numRows;
+            if (numDocs == 0 || numRows == numDocs) {
+                return requiredRows;
+            }
+            double acceptance = Math.max((double) numRows / numDocs, 1D / numDocs);
+            double estimation = Math.ceil(requiredRows / acceptance * PAGE_SIZE_MARGIN);
+            return (int) Math.min(estimation, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Collects from Cassandra the rows identified by the next batch of hits of the current page, returning those
+         * satisfying the filtering {@link IndexExpression}s.
+         *
+         * @return The collected and accepted rows.
+         * @throws IOException If there are I/O errors.
+         */
+        private Iterator<ScoredRow> collectBatch() throws IOException {
+
+            // Decode the keys of the next hits
+            luceneTime.start();
+            int batchSize = Math.min(page.length - position, requiredHits());
+            hits.clear();
+            hits.add(page, position, position + batchSize);
+            rowMapper.decodeKeys(searcher.getIndexReader(), hits);
+            position += batchSize;
+            after = page[position - 1];
+            numDocs += batchSize;
+            luceneTime.stop();
+
+            // Fetch and filter rows from Cassandra
+            collectTime.start();
+            List<ScoredRow> scoredRows = scoredRows(hits, timestamp, relevance);
+            Iterator<ScoredRow> iterator = scoredRows.iterator();
+            while (iterator.hasNext()) {
+                if (!accepted(iterator.next(), expressions)) {
+                    iterator.remove();
+                }
+            }
+            collectTime.stop();
+
+            return scoredRows.iterator();
+        }
     }
 
     /**
@@ -437,17 +1057,46 @@ public abstract class RowService {
     }
 
     /**
-     * Returns the {@link ScoredRow}s identified by the specified {@link Document}s, using the specified time stamp to
+     * Returns the {@link ScoredRow}s identified by the specified {@link HitBuffer}, using the specified time stamp to
      * ignore deleted columns. The {@link Row}s are retrieved from the storage engine, so it involves IO operations.
      *
-     * @param searchResults The {@link SearchResult}s
+     * @param hits          The Lucene hits, with their row keys already decoded.
      * @param timestamp     The time stamp to ignore deleted columns.
      * @param usesRelevance If the search uses relevance.
-     * @return The {@link ScoredRow} identified by the specified {@link Document}s
+     * @return The {@link ScoredRow}s identified by the specified {@link HitBuffer}, in the same order.
      */
-    protected abstract List<ScoredRow> scoredRows(List<SearchResult> searchResults,
-                                                  long timestamp,
-                                                  boolean usesRelevance);
+    protected abstract List<ScoredRow> scoredRows(HitBuffer hits, long timestamp, boolean usesRelevance);
+
+    /**
+     * Runs the specified row reading tasks and returns their results in the same order as the tasks. The tasks are run
+     * concurrently in the collecting thread pool if there is any, or sequentially in the calling thread otherwise.
+     *
+     * @param tasks The tasks to be run.
+     * @param <T>   The type of the tasks results.
+     * @return The results of the specified tasks, in the same order as the tasks.
+     */
+    protected final <T> List<T> collect(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (collectingPool == null || tasks.size() < 2) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : collectingPool.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
 
     /**
      * Returns a {@link ColumnFamily} composed by the non expired {@link Cell}s of the specified  {@link ColumnFamily}.
@@ -467,23 +1116,20 @@ public abstract class RowService {
     }
 
     /**
-     * Adds to the specified {@link Row} the specified Lucene score column.
+     * Adds to the specified {@link Row} the specified Lucene score column. The score is added in place to the row
+     * {@link ColumnFamily}, which must be a private copy such as the ones returned by {@link #cleanExpired}.
      *
      * @param row       A {@link Row}.
      * @param timestamp The score column timestamp.
      * @param score     The score column value.
      * @return The {@link Row} with the score.
      */
-    protected Row addScoreColumn(Row row, long timestamp, Float score) {
+    protected Row addScoreColumn(Row row, long timestamp, float score) {
         ColumnFamily cf = row.cf;
         CellName cellName = rowMapper.makeCellName(cf);
-        ByteBuffer cellValue = UTF8Type.instance.decompose(score.toString());
-
-        ColumnFamily dcf = ArrayBackedSortedColumns.factory.create(baseCfs.metadata);
-        dcf.addColumn(cellName, cellValue, timestamp);
-        dcf.addAll(row.cf);
-
-        return new Row(row.key, dcf);
+        ByteBuffer cellValue = UTF8Type.instance.decompose(Float.toString(score));
+        cf.addColumn(cellName, cellValue, timestamp);
+        return row;
     }
 
     /**
@@ -508,6 +1154,24 @@ public abstract class RowService {
         return rowMapper.naturalComparator();
     }
 
+    /**
+     * Returns the specified {@link Row}s without the ones representing the same logical row as a previous one. The
+     * relative order of the {@link Row}s is kept.
+     *
+     * @param rows A list of {@link Row}s, maybe containing duplicates.
+     * @return The specified {@link Row}s without duplicates.
+     */
+    public List<Row> removeDuplicates(List<Row> rows) {
+        Set<ByteBuffer> keys = new HashSet<>(rows.size());
+        List<Row> result = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (keys.add(rowMapper.rowKey(row))) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the default {@link Row} comparator. This comparator is based on Cassandra's natural order.
      *
@@ -523,7 +1187,7 @@ public abstract class RowService {
      * @param row A {@link Row}.
      * @return The score of the specified {@link Row}.
      */
-    protected Float score(Row row) {
+    protected float score(Row row) {
         ColumnFamily cf = row.cf;
         CellName cellName = rowMapper.makeCellName(cf);
         Cell cell = cf.getColumn(cellName);
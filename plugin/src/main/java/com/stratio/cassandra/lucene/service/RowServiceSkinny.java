@@ -28,9 +28,11 @@ import org.apache.lucene.search.ScoreDoc;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * {@link RowService} that manages simple rows.
@@ -39,14 +41,6 @@ import java.util.Set;
  */
 public class RowServiceSkinny extends RowService {
 
-    /** The names of the Lucene fields to be loaded. */
-    private static final Set<String> FIELDS_TO_LOAD;
-
-    static {
-        FIELDS_TO_LOAD = new HashSet<>();
-        FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
-    }
-
     /** The used row mapper. */
     private final RowMapperSkinny rowMapper;
 
@@ -60,17 +54,7 @@ public class RowServiceSkinny extends RowService {
     public RowServiceSkinny(ColumnFamilyStore baseCfs, ColumnDefinition columnDefinition) throws IOException {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperSkinny) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * These fields are just the partition key.
-     */
-    @Override
-    public Set<String> fieldsToLoad() {
-        return FIELDS_TO_LOAD;
+        init(rowMapper.sort(), columnDefinition);
     }
 
     /**
@@ -82,14 +66,21 @@ public class RowServiceSkinny extends RowService {
 
         if (columnFamily.iterator().hasNext()) // Create or update row
         {
-            Row row = row(partitionKey, timestamp); // Read row
+            Row row;
+            if (canSkipRead(partitionKey, columnFamily)) {
+                row = new Row(partitionKey, columnFamily); // Index mutation without reading
+                indexingStats.skippedRead();
+            } else {
+                row = row(partitionKey, timestamp); // Read row
+                indexingStats.read();
+            }
             Document document = rowMapper.document(row);
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.upsert(term, document); // Store document
+            luceneIndex.upsert(partitionKey.getToken(), term, document); // Store document
         } else if (columnFamily.deletionInfo() != null) // Delete full row
         {
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.delete(term);
+            luceneIndex.delete(partitionKey.getToken(), term);
         }
     }
 
@@ -97,26 +88,54 @@ public class RowServiceSkinny extends RowService {
     @Override
     public void doDelete(DecoratedKey partitionKey) throws IOException {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        luceneIndex.delete(partitionKey.getToken(), term);
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * The rows are read in token order, which is friendlier with the storage engine, and they are returned in the same
+     * order as the specified hits.
+     */
     @Override
-    protected List<ScoredRow> scoredRows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance) {
-        List<ScoredRow> scoredRows = new ArrayList<>(searchResults.size());
-        for (SearchResult searchResult : searchResults) {
+    protected List<ScoredRow> scoredRows(HitBuffer hits, final long timestamp, boolean usesRelevance) {
+
+        // Sort partition keys
+        int size = hits.size();
+        DecoratedKey[] partitionKeys = new DecoratedKey[size];
+        for (int i = 0; i < size; i++) {
+            partitionKeys[i] = hits.partitionKey(i);
+        }
+        Arrays.sort(partitionKeys);
+
+        // Read rows in token order
+        List<Callable<Row>> tasks = new ArrayList<>(size);
+        for (final DecoratedKey partitionKey : partitionKeys) {
+            tasks.add(new Callable<Row>() {
+                @Override
+                public Row call() {
+                    return row(partitionKey, timestamp);
+                }
+            });
+        }
+        List<Row> rows = collect(tasks);
+        Map<DecoratedKey, Row> rowsByPartitionKey = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            rowsByPartitionKey.put(partitionKeys[i], rows.get(i));
+        }
+
+        // Restore hits order
+        List<ScoredRow> scoredRows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
 
-            // Extract row from document
-            DecoratedKey partitionKey = searchResult.getPartitionKey();
-            Row row = row(partitionKey, timestamp);
+            Row row = rowsByPartitionKey.get(hits.partitionKey(i));
 
             if (row == null) continue;
 
             // Return decorated row
-            ScoreDoc scoreDoc = searchResult.getScoreDoc();
+            ScoreDoc scoreDoc = hits.scoreDoc(i);
             if (usesRelevance) {
-                Float score = scoreDoc.score;
-                Row decoratedRow = addScoreColumn(row, timestamp, score);
+                Row decoratedRow = addScoreColumn(row, timestamp, hits.score(i));
                 scoredRows.add(new ScoredRow(decoratedRow, scoreDoc));
             } else {
                 scoredRows.add(new ScoredRow(row, scoreDoc));
@@ -15,8 +15,9 @@
  */
 package com.stratio.cassandra.lucene.service;
 
-import com.google.common.collect.Lists;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.Cell;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
@@ -30,11 +31,12 @@ import org.apache.cassandra.db.filter.SliceQueryFilter;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.IntroSorter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * {@link RowService} that manages wide rows.
@@ -43,14 +45,15 @@ import java.util.*;
  */
 public class RowServiceWide extends RowService {
 
-    /** The names of the Lucene fields to be loaded. */
-    private static final Set<String> FIELDS_TO_LOAD;
+    /** The max number of clustering keys to be read in a single partition query. */
+    private static final int MAX_SLICES = 1000;
 
-    static {
-        FIELDS_TO_LOAD = new HashSet<>();
-        FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
-        FIELDS_TO_LOAD.add(ClusteringKeyMapper.FIELD_NAME);
-    }
+    /**
+     * The min ratio between the hits of a partition and its estimated number of rows to read the hits with a single
+     * covering slice instead of a slice per hit. Its inverse is also the max number of rows to be read per hit with a
+     * covering slice, which is capped because the estimation is partition-wide.
+     */
+    private static final double MIN_COALESCING_DENSITY = 0.1;
 
     /** The used row mapper. */
     private final RowMapperWide rowMapper;
@@ -65,17 +68,7 @@ public class RowServiceWide extends RowService {
     public RowServiceWide(ColumnFamilyStore baseCfs, ColumnDefinition columnDefinition) throws IOException {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperWide) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * These fields are the partition and clustering keys.
-     */
-    @Override
-    public Set<String> fieldsToLoad() {
-        return FIELDS_TO_LOAD;
+        init(rowMapper.sort(), columnDefinition);
     }
 
     /** {@inheritDoc} */
@@ -85,14 +78,25 @@ public class RowServiceWide extends RowService {
         DecoratedKey partitionKey = rowMapper.partitionKey(key);
 
         if (columnFamily.iterator().hasNext()) {
-            List<CellName> clusteringKeys = rowMapper.clusteringKeys(columnFamily);
-            Map<CellName, Row> rows = rows(partitionKey, clusteringKeys, timestamp);
-            for (Map.Entry<CellName, Row> entry : rows.entrySet()) {
-                CellName clusteringKey = entry.getKey();
-                Row row = entry.getValue();
-                Document document = rowMapper.document(row);
-                Term term = rowMapper.term(partitionKey, clusteringKey);
-                luceneIndex.upsert(term, document); // Store document
+            ColumnFamily storedColumnFamily;
+            if (canSkipRead(partitionKey, columnFamily)) {
+                storedColumnFamily = columnFamily; // Index mutation without reading
+                indexingStats.skippedRead();
+            } else {
+                List<CellName> clusteringKeys = rowMapper.clusteringKeys(columnFamily);
+                ColumnSlice[] slices = rowMapper.columnSlices(clusteringKeys);
+                storedColumnFamily = read(partitionKey, slices, timestamp);
+                indexingStats.read();
+            }
+            if (storedColumnFamily != null) {
+                Map<CellName, ColumnFamily> rows = rowMapper.splitRows(storedColumnFamily);
+                for (Map.Entry<CellName, ColumnFamily> entry : rows.entrySet()) {
+                    CellName clusteringKey = entry.getKey();
+                    Row row = new Row(partitionKey, entry.getValue());
+                    Document document = rowMapper.document(row);
+                    Term term = rowMapper.term(partitionKey, clusteringKey);
+                    luceneIndex.upsert(partitionKey.getToken(), term, document); // Store document
+                }
             }
         } else if (deletionInfo != null) {
             Iterator<RangeTombstone> iterator = deletionInfo.rangeIterator();
@@ -100,11 +104,11 @@ public class RowServiceWide extends RowService {
                 while (iterator.hasNext()) {
                     RangeTombstone rangeTombstone = iterator.next();
                     Query query = rowMapper.query(partitionKey, rangeTombstone);
-                    luceneIndex.delete(query);
+                    luceneIndex.delete(partitionKey.getToken(), query);
                 }
             } else {
                 Term term = rowMapper.term(partitionKey);
-                luceneIndex.delete(term);
+                luceneIndex.delete(partitionKey.getToken(), term);
             }
         }
     }
@@ -113,62 +117,95 @@ public class RowServiceWide extends RowService {
     @Override
     public void doDelete(DecoratedKey partitionKey) throws IOException {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        luceneIndex.delete(partitionKey.getToken(), term);
     }
 
     /**
      * {@inheritDoc}
      *
-     * The {@link Row} is a logical one.
+     * The {@link Row} is a logical one. The hit positions are sorted by primary key, so the cells read from each
+     * partition can be joined with the hits in a single merge pass comparing the raw key components, without hashing.
+     * The partitions are read concurrently if there are collecting threads. The hits of the partitions where they are
+     * dense enough are read with a single covering slice, discarding the not matched rows during the join.
      */
     @Override
-    protected List<ScoredRow> scoredRows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance) {
-
-        Map<String, Row> rowsByScore = new HashMap<>(searchResults.size());
-
-        // Group key queries by partition keys
-        Map<String, ScoreDoc> scoresByClusteringKey = new HashMap<>(searchResults.size());
-        Map<DecoratedKey, List<CellName>> keys = new HashMap<>();
-        for (SearchResult searchResult : searchResults) {
-            DecoratedKey partitionKey = searchResult.getPartitionKey();
-            CellName clusteringKey = searchResult.getClusteringKey();
-            ScoreDoc scoreDoc = searchResult.getScoreDoc();
-            String rowHash = rowMapper.hash(partitionKey, clusteringKey);
-            scoresByClusteringKey.put(rowHash, scoreDoc);
-            List<CellName> clusteringKeys = keys.get(partitionKey);
-            if (clusteringKeys == null) {
-                clusteringKeys = new ArrayList<>();
-                keys.put(partitionKey, clusteringKeys);
-            }
-            clusteringKeys.add(clusteringKey);
+    protected List<ScoredRow> scoredRows(final HitBuffer hits,
+                                         final long timestamp,
+                                         final boolean usesRelevance) {
+
+        // Sort hit positions by partition key and clustering key
+        int size = hits.size();
+        final int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
         }
+        new IntroSorter() {
+            private int pivot;
 
-        for (Map.Entry<DecoratedKey, List<CellName>> entry : keys.entrySet()) {
-            DecoratedKey partitionKey = entry.getKey();
-            for (List<CellName> clusteringKeys : Lists.partition(entry.getValue(), 1000)) {
-                Map<CellName, Row> partitionRows = rows(partitionKey, clusteringKeys, timestamp);
-                for (Map.Entry<CellName, Row> entry1 : partitionRows.entrySet()) {
-                    CellName clusteringKey = entry1.getKey();
-                    Row row = entry1.getValue();
-                    String rowHash = rowMapper.hash(partitionKey, clusteringKey);
-                    ScoreDoc scoreDoc = scoresByClusteringKey.get(rowHash);
-                    if (usesRelevance) {
-                        Float score = scoreDoc.score;
-                        Row scoredRow = addScoreColumn(row, timestamp, score);
-                        rowsByScore.put(scoreDoc.toString(), scoredRow);
-                    } else {
-                        rowsByScore.put(scoreDoc.toString(), row);
-                    }
+            @Override
+            protected void swap(int i, int j) {
+                int position = positions[i];
+                positions[i] = positions[j];
+                positions[j] = position;
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = positions[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return compare(hits, pivot, positions[j]);
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return compare(hits, positions[i], positions[j]);
+            }
+
+            private int compare(HitBuffer hits, int position1, int position2) {
+                int comparison = hits.partitionKey(position1).compareTo(hits.partitionKey(position2));
+                if (comparison != 0) {
+                    return comparison;
                 }
+                return rowMapper.compareClusteringKeys(hits.clusteringKey(position1), hits.clusteringKey(position2));
+            }
+        }.sort(0, size);
+
+        // Read the rows of each partition, placing them at their hit positions
+        final Row[] rows = new Row[size];
+        double rowsPerPartition = estimatedRowsPerPartition();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int start = 0;
+        while (start < size) {
+            DecoratedKey partitionKey = hits.partitionKey(positions[start]);
+            int end = start + 1;
+            while (end < size && partitionKey.equals(hits.partitionKey(positions[end]))) {
+                end++;
             }
+            final boolean coalesce = end - start > 1 && end - start >= MIN_COALESCING_DENSITY * rowsPerPartition;
+            for (int from = start; from < end; from += MAX_SLICES) {
+                final int chunkFrom = from;
+                final int chunkTo = Math.min(from + MAX_SLICES, end);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        join(hits, positions, chunkFrom, chunkTo, coalesce, rows, timestamp, usesRelevance);
+                        return null;
+                    }
+                });
+            }
+            start = end;
         }
+        collect(tasks);
 
-        List<ScoredRow> scoredRows = new ArrayList<>(searchResults.size());
-        for (SearchResult searchResult : searchResults) {
-            ScoreDoc scoreDoc = searchResult.getScoreDoc();
-            Row row = rowsByScore.get(scoreDoc.toString());
+        // Return rows in hits order
+        List<ScoredRow> scoredRows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Row row = rows[i];
             if (row != null) {
-                scoredRows.add(new ScoredRow(row, scoreDoc));
+                scoredRows.add(new ScoredRow(row, hits.scoreDoc(i)));
             }
         }
 
@@ -176,50 +213,164 @@ public class RowServiceWide extends RowService {
     }
 
     /**
-     * Returns the CQL3 {@link Row} identified by the specified key pair, using the specified time stamp to ignore
-     * deleted columns. The {@link Row} is retrieved from the storage engine, so it involves IO operations.
+     * Reads the CQL3 rows of the specified sorted hit positions, which must belong to the same partition, and puts
+     * them in the specified array at their hit positions. Both the read cells and the positions are in clustering key
+     * order, so each cell is assigned to its hit just advancing the position while its clustering key is lower, and the
+     * cells of not hit rows are discarded.
+     *
+     * A covering slice reads at most {@code 1 / MIN_COALESCING_DENSITY} rows per hit. If this limit is reached before
+     * the last hit, the remaining hits are read with a slice per clustering key.
+     *
+     * @param hits          The hits.
+     * @param positions     The hit positions sorted by primary key.
+     * @param from          The first position to be read, inclusive.
+     * @param to            The last position to be read, exclusive.
+     * @param coalesce      If the rows must be read with a single slice covering all of them.
+     * @param rows          The rows indexed by hit position.
+     * @param timestamp     The time stamp to ignore deleted columns.
+     * @param usesRelevance If the score column must be added to the rows.
+     */
+    private void join(HitBuffer hits,
+                      int[] positions,
+                      int from,
+                      int to,
+                      boolean coalesce,
+                      Row[] rows,
+                      long timestamp,
+                      boolean usesRelevance) {
+
+        DecoratedKey partitionKey = hits.partitionKey(positions[from]);
+        SliceQueryFilter dataFilter;
+        if (coalesce) {
+            CellName first = hits.clusteringKey(positions[from]);
+            CellName last = hits.clusteringKey(positions[to - 1]);
+            int maxRows = (int) Math.min(Integer.MAX_VALUE - 1, Math.ceil((to - from) / MIN_COALESCING_DENSITY));
+            if (baseCfs.metadata.hasStaticColumns()) {
+                maxRows++;
+            }
+            dataFilter = filter(new ColumnSlice[]{rowMapper.columnSlice(first, last)}, maxRows);
+        } else {
+            List<CellName> clusteringKeys = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                clusteringKeys.add(hits.clusteringKey(positions[i]));
+            }
+            dataFilter = filter(rowMapper.columnSlices(clusteringKeys), Integer.MAX_VALUE);
+        }
+
+        ColumnFamily columnFamily = read(partitionKey, dataFilter, timestamp);
+        boolean truncated = coalesce && dataFilter.lastCounted() >= dataFilter.count;
+        if (columnFamily == null) {
+            if (truncated) {
+                join(hits, positions, from, to, false, rows, timestamp, usesRelevance);
+            }
+            return;
+        }
+
+        int i = from;
+        ColumnFamily rowColumnFamily = null;
+        for (Cell cell : columnFamily) {
+            CellName cellName = cell.name();
+            if (cellName.isStatic()) {
+                continue;
+            }
+            int comparison = rowMapper.compareClusteringKeys(hits.clusteringKey(positions[i]), cellName);
+            while (comparison < 0) {
+                if (rowColumnFamily != null) {
+                    rows[positions[i]] = row(hits, positions[i], rowColumnFamily, timestamp, usesRelevance);
+                    rowColumnFamily = null;
+                }
+                if (++i == to) {
+                    return;
+                }
+                comparison = rowMapper.compareClusteringKeys(hits.clusteringKey(positions[i]), cellName);
+            }
+            if (comparison == 0) {
+                if (rowColumnFamily == null) {
+                    rowColumnFamily = ArrayBackedSortedColumns.factory.create(baseCfs.metadata);
+                }
+                rowColumnFamily.addColumn(cell);
+            }
+        }
+        if (rowColumnFamily != null) {
+            rows[positions[i]] = row(hits, positions[i], rowColumnFamily, timestamp, usesRelevance);
+        }
+        if (truncated) {
+            rows[positions[i]] = null; // It could have been partially read
+            join(hits, positions, i, to, false, rows, timestamp, usesRelevance);
+        }
+    }
+
+    private Row row(HitBuffer hits, int position, ColumnFamily columnFamily, long timestamp, boolean usesRelevance) {
+        Row row = new Row(hits.partitionKey(position), columnFamily);
+        return usesRelevance ? addScoreColumn(row, timestamp, hits.score(position)) : row;
+    }
+
+    /**
+     * Returns the estimated mean number of CQL3 rows per partition, based on the mean number of cells per partition
+     * of the stored SSTables. It is infinite if there is no estimation, so the hits are never coalesced.
      *
-     * @param partitionKey   The partition key.
-     * @param clusteringKeys The clustering keys.
-     * @param timestamp      The time stamp to ignore deleted columns.
-     * @return The CQL3 {@link Row} identified by the specified key pair.
+     * @return The estimated mean number of CQL3 rows per partition, or infinity if there is no estimation.
      */
-    private Map<CellName, Row> rows(DecoratedKey partitionKey, List<CellName> clusteringKeys, long timestamp) {
-        ColumnSlice[] slices = rowMapper.columnSlices(clusteringKeys);
+    private double estimatedRowsPerPartition() {
+        int meanCells = baseCfs.getMeanColumns();
+        int cellsPerRow = baseCfs.metadata.regularColumns().size() + 1; // Regular cells plus the row marker
+        return meanCells <= 0 ? Double.POSITIVE_INFINITY : (double) meanCells / cellsPerRow;
+    }
 
+    /**
+     * Returns the not deleted cells contained in the specified slices of the specified partition, using the specified
+     * time stamp to ignore deleted columns. The cells are retrieved from the storage engine, so it involves IO
+     * operations.
+     *
+     * @param partitionKey The partition key.
+     * @param slices       The slices to be read.
+     * @param timestamp    The time stamp to ignore deleted columns.
+     * @return The cells contained in the specified slices, or {@code null} if there are no such cells.
+     */
+    private ColumnFamily read(DecoratedKey partitionKey, ColumnSlice[] slices, long timestamp) {
+        return read(partitionKey, filter(slices, Integer.MAX_VALUE), timestamp);
+    }
+
+    /**
+     * Returns the filter for reading the specified slices, and the static columns if any, up to the specified number of
+     * CQL3 rows.
+     *
+     * @param slices  The slices to be read.
+     * @param maxRows The max number of CQL3 rows to be read, counting the static row if any.
+     * @return The filter for reading {@code slices}.
+     */
+    private SliceQueryFilter filter(ColumnSlice[] slices, int maxRows) {
         if (baseCfs.metadata.hasStaticColumns()) {
             LinkedList<ColumnSlice> l = new LinkedList<>(Arrays.asList(slices));
             l.addFirst(baseCfs.metadata.comparator.staticPrefix().slice());
             slices = new ColumnSlice[l.size()];
             slices = l.toArray(slices);
         }
+        return new SliceQueryFilter(slices, false, maxRows, baseCfs.metadata.clusteringColumns().size());
+    }
 
-        SliceQueryFilter dataFilter = new SliceQueryFilter(slices,
-                                                           false,
-                                                           Integer.MAX_VALUE,
-                                                           baseCfs.metadata.clusteringColumns().size());
+    /**
+     * Returns the not deleted cells selected by the specified filter in the specified partition, using the specified
+     * time stamp to ignore deleted columns. The cells are retrieved from the storage engine, so it involves IO
+     * operations.
+     *
+     * @param partitionKey The partition key.
+     * @param dataFilter   The filter selecting the cells to be read.
+     * @param timestamp    The time stamp to ignore deleted columns.
+     * @return The cells selected by the specified filter, or {@code null} if there are no such cells.
+     */
+    private ColumnFamily read(DecoratedKey partitionKey, SliceQueryFilter dataFilter, long timestamp) {
         QueryFilter queryFilter = new QueryFilter(partitionKey, baseCfs.name, dataFilter, timestamp);
 
         ColumnFamily queryColumnFamily = baseCfs.getColumnFamily(queryFilter);
 
         // Avoid null
         if (queryColumnFamily == null) {
-            return Collections.emptyMap();
+            return null;
         }
 
         // Remove deleted/expired columns
-        ColumnFamily cleanQueryColumnFamily = cleanExpired(queryColumnFamily, timestamp);
-
-        // Split CQL3 row column families
-        Map<CellName, ColumnFamily> columnFamilies = rowMapper.splitRows(cleanQueryColumnFamily);
-
-        // Build and return rows
-        Map<CellName, Row> rows = new HashMap<>(columnFamilies.size());
-        for (Map.Entry<CellName, ColumnFamily> entry : columnFamilies.entrySet()) {
-            Row row = new Row(partitionKey, entry.getValue());
-            rows.put(entry.getKey(), row);
-        }
-        return rows;
+        return cleanExpired(queryColumnFamily, timestamp);
     }
 
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.stratio.cassandra.lucene.schema.Schema;
+import com.stratio.cassandra.lucene.search.Search;
+import com.stratio.cassandra.lucene.search.SearchBuilder;
+import com.stratio.cassandra.lucene.util.Log;
+import org.apache.lucene.search.Query;
+
+import javax.management.MBeanException;
+import javax.management.ObjectName;
+import javax.management.OperationsException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bounded cache of parsed {@link Search}es, keyed by their JSON representation, and of the Lucene {@link Query}s
+ * compiled from their conditions. The compiled queries don't include any range restriction, so they can be reused by
+ * any search with the same JSON. Both the cached {@link Search}es and {@link Query}s are immutable, so they can be
+ * shared among concurrent searches.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class SearchCache implements SearchCacheMBean {
+
+    private final Schema schema;
+    private final Cache<String, Search> searches;
+    private final Cache<Search, Optional<Query>> queries;
+    private ObjectName objectName;
+
+    /**
+     * Builds a new {@link SearchCache} for the specified index, registering it as a JMX MBean.
+     *
+     * @param keyspace The keyspace name.
+     * @param table    The table name.
+     * @param name     The index name.
+     * @param schema   The {@link Schema} to be used for compiling the queries.
+     * @param size     The max number of cached searches and queries.
+     */
+    public SearchCache(String keyspace, String table, String name, Schema schema, int size) {
+        this.schema = schema;
+        searches = CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+        queries = CacheBuilder.newBuilder().maximumSize(size).weakKeys().recordStats().build();
+        try {
+            objectName = new ObjectName(String.format(
+                    "com.stratio.cassandra.lucene:type=SearchCaches,keyspace=%s,table=%s,index=%s",
+                    keyspace,
+                    table,
+                    name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while registering MBean");
+        }
+    }
+
+    /**
+     * Returns the {@link Search} represented by the specified JSON string.
+     *
+     * @param json A JSON {@link Search} representation.
+     * @return The {@link Search} represented by {@code json}.
+     */
+    public Search search(String json) {
+        Search search = searches.getIfPresent(json);
+        if (search == null) {
+            search = SearchBuilder.fromJson(json).build();
+            searches.put(json, search);
+        }
+        return search;
+    }
+
+    /**
+     * Returns the Lucene {@link Query} compiled from the conditions of the specified {@link Search}, without any range
+     * restriction. Queries are cached by {@link Search} identity, so only the {@link Search}es returned by {@link
+     * #search(String)} can be found in the cache.
+     *
+     * @param search A {@link Search}.
+     * @return The conditions {@link Query}, maybe {@code null} meaning no conditions.
+     * @see Search#query(Schema)
+     */
+    public Query query(Search search) {
+        Optional<Query> query = queries.getIfPresent(search);
+        if (query == null) {
+            query = Optional.fromNullable(search.query(schema));
+            queries.put(search, query);
+        }
+        return query.orNull();
+    }
+
+    /**
+     * Validates the {@link Search} represented by the specified JSON string, compiling and caching its {@link Query}.
+     *
+     * @param json A JSON {@link Search} representation.
+     */
+    public void validate(String json) {
+        Search search = search(json);
+        query(search);
+        search.sort(schema);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSearchHits() {
+        return searches.stats().hitCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSearchMisses() {
+        return searches.stats().missCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueryHits() {
+        return queries.stats().hitCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueryMisses() {
+        return queries.stats().missCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSize() {
+        return searches.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        searches.invalidateAll();
+        queries.invalidateAll();
+    }
+
+    /**
+     * Removes all the cached searches and queries and unregisters the JMX MBean.
+     */
+    public void close() {
+        clear();
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while removing MBean");
+        }
+    }
+}
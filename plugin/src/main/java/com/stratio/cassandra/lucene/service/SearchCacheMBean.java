@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public interface SearchCacheMBean {
+
+    /**
+     * Returns the number of searches found already parsed in the cache.
+     *
+     * @return The number of parsed searches cache hits.
+     */
+    long getSearchHits();
+
+    /**
+     * Returns the number of searches not found in the cache, and thus parsed.
+     *
+     * @return The number of parsed searches cache misses.
+     */
+    long getSearchMisses();
+
+    /**
+     * Returns the number of Lucene queries found already compiled in the cache.
+     *
+     * @return The number of compiled queries cache hits.
+     */
+    long getQueryHits();
+
+    /**
+     * Returns the number of Lucene queries not found in the cache, and thus compiled.
+     *
+     * @return The number of compiled queries cache misses.
+     */
+    long getQueryMisses();
+
+    /**
+     * Returns the number of parsed searches currently cached.
+     *
+     * @return The number of parsed searches currently cached.
+     */
+    long getSize();
+
+    /**
+     * Removes all the cached searches and queries.
+     */
+    void clear();
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.stratio.cassandra.lucene.util.Log;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+
+import javax.management.MBeanException;
+import javax.management.ObjectName;
+import javax.management.OperationsException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool used by the Lucene {@link org.apache.lucene.search.IndexSearcher}s of an index to search their segment
+ * slices concurrently. It keeps track of the time that the tasks wait in the queue before being run, which is exposed
+ * through JMX to detect when the pool is too small for the search load.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class SearchExecutor extends ThreadPoolExecutor implements SearchExecutorMBean {
+
+    private final AtomicLong startedTasks = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong queueWaitMaxNanos = new AtomicLong();
+    private ObjectName objectName;
+
+    /**
+     * Builds a new {@link SearchExecutor} for the specified index, registering it as a JMX MBean.
+     *
+     * @param keyspace The keyspace name.
+     * @param table    The table name.
+     * @param name     The index name.
+     * @param threads  The number of searching threads.
+     */
+    public SearchExecutor(String keyspace, String table, String name, int threads) {
+        super(threads,
+              threads,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new NamedThreadFactory(String.format("LuceneSearcher:%s.%s", keyspace, table)));
+        try {
+            objectName = new ObjectName(String.format(
+                    "com.stratio.cassandra.lucene:type=SearchExecutors,keyspace=%s,table=%s,index=%s",
+                    keyspace,
+                    table,
+                    name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while registering MBean");
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(final Runnable command) {
+        final long queuedTime = System.nanoTime();
+        super.execute(new Runnable() {
+            @Override
+            public void run() {
+                long waitNanos = System.nanoTime() - queuedTime;
+                startedTasks.incrementAndGet();
+                queueWaitNanos.addAndGet(waitNanos);
+                long maxNanos = queueWaitMaxNanos.get();
+                while (waitNanos > maxNanos && !queueWaitMaxNanos.compareAndSet(maxNanos, waitNanos)) {
+                    maxNanos = queueWaitMaxNanos.get();
+                }
+                command.run();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getStartedTasks() {
+        return startedTasks.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getQueueWaitMeanMicros() {
+        long tasks = startedTasks.get();
+        return tasks == 0 ? 0 : queueWaitNanos.get() / 1000D / tasks;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueueWaitMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(queueWaitMaxNanos.get());
+    }
+
+    /**
+     * Stops all the searching threads and unregisters the JMX MBean.
+     */
+    public void close() {
+        shutdownNow();
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (MBeanException | OperationsException e) {
+            Log.error(e, "Error while removing MBean");
+        }
+    }
+}
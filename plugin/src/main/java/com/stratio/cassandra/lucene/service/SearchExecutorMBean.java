@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public interface SearchExecutorMBean {
+
+    /**
+     * Returns the number of threads that are actively searching index segments.
+     *
+     * @return The number of active searching threads.
+     */
+    int getActiveCount();
+
+    /**
+     * Returns the number of segment searching tasks waiting in the queue.
+     *
+     * @return The number of queued segment searching tasks.
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the number of segment searching tasks that have been started.
+     *
+     * @return The number of started segment searching tasks.
+     */
+    long getStartedTasks();
+
+    /**
+     * Returns the mean time that the segment searching tasks have waited in the queue, in microseconds.
+     *
+     * @return The mean queue wait time in microseconds.
+     */
+    double getQueueWaitMeanMicros();
+
+    /**
+     * Returns the max time that a segment searching task has waited in the queue, in microseconds.
+     *
+     * @return The max queue wait time in microseconds.
+     */
+    long getQueueWaitMaxMicros();
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lucene index split in several token range shards, each one stored in its own {@link LuceneIndex}. Writes are routed
+ * to the shard containing the row token, and searches use only the shards overlapping the searched token range,
+ * searching them in parallel and merging their top hits. Searches not sorted by token, whose following pages can have
+ * hits anywhere before the stop token, must search the shards of the whole range up to it.
+ *
+ * If there is a search executor, the segments of the searched shards are searched concurrently. By default, there is
+ * a search executor only if there are several shards, with a thread per shard.
+ *
+ * All the shards share the same filter cache, and the index writer buffer and the NRT cache are evenly split among
+ * them. A single shard index is the same as a plain {@link LuceneIndex}.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class ShardedLuceneIndex {
+
+    private final TokenMapper tokenMapper;
+    private final LuceneIndex[] shards;
+    private final LRUQueryCache filterCache;
+    private final QueryCachingPolicy filterCachingPolicy;
+    private final SearchExecutor searchExecutor;
+
+    /**
+     * Builds a new {@link ShardedLuceneIndex}.
+     *
+     * @param keyspace         The keyspace name.
+     * @param table            The table name.
+     * @param name             The index name.
+     * @param path             The path of the directory in where the Lucene files will be stored.
+     * @param ramBufferMB      The index writer buffer size in MB, to be split among shards.
+     * @param maxMergeMB       NRTCachingDirectory max merge size in MB.
+     * @param maxCachedMB      NRTCachingDirectory max cached MB, to be split among shards.
+     * @param filterCacheMB    The max size in MB of the cached filter doc id sets, where {@code 0} means no caching.
+     * @param analyzer         The default {@link Analyzer}.
+     * @param refreshSeconds   The index readers refresh time in seconds. Writings are not visible until this time.
+     * @param tokenMapper      The {@link TokenMapper} to be used to assign tokens to shards.
+     * @param numShards        The number of shards.
+     * @param searchingThreads The number of threads for searching segments concurrently, {@code 0} means default.
+     */
+    public ShardedLuceneIndex(String keyspace,
+                              String table,
+                              String name,
+                              Path path,
+                              Integer ramBufferMB,
+                              Integer maxMergeMB,
+                              Integer maxCachedMB,
+                              Integer filterCacheMB,
+                              Analyzer analyzer,
+                              Double refreshSeconds,
+                              TokenMapper tokenMapper,
+                              int numShards,
+                              int searchingThreads) {
+        this.tokenMapper = tokenMapper;
+        this.filterCache = LuceneIndex.filterCache(filterCacheMB);
+        this.filterCachingPolicy = filterCache == null ? null : new UsageTrackingQueryCachingPolicy();
+        this.shards = new LuceneIndex[numShards];
+        int numThreads = searchingThreads > 0 ? searchingThreads : numShards > 1 ? numShards : 0;
+        searchExecutor = numThreads > 0 ? new SearchExecutor(keyspace, table, name, numThreads) : null;
+        if (numShards == 1) {
+            shards[0] = new LuceneIndex(keyspace,
+                                        table,
+                                        name,
+                                        path,
+                                        ramBufferMB,
+                                        maxMergeMB,
+                                        maxCachedMB,
+                                        filterCache,
+                                        searchExecutor,
+                                        analyzer,
+                                        refreshSeconds,
+                                        null);
+        } else {
+            for (int i = 0; i < numShards; i++) {
+                shards[i] = new LuceneIndex(keyspace,
+                                            table,
+                                            String.format("%s.%d", name, i),
+                                            path.resolve(String.valueOf(i)),
+                                            Math.max(1, ramBufferMB / numShards),
+                                            maxMergeMB,
+                                            Math.max(1, maxCachedMB / numShards),
+                                            filterCache,
+                                            searchExecutor,
+                                            analyzer,
+                                            refreshSeconds,
+                                            null);
+            }
+        }
+    }
+
+    /**
+     * Initializes all the shards using the specified {@link Sort} for trying to keep the {@link Document}s sorted.
+     *
+     * @param sort The {@link Sort} to be used.
+     * @return {@code true} if any shard has removed documents of another format version, {@code false} otherwise.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public boolean init(Sort sort) throws IOException {
+        boolean upgraded = false;
+        for (int i = 0; i < shards.length; i++) {
+            try {
+                upgraded |= shards[i].init(sort);
+            } catch (IOException | RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    shards[j].close();
+                }
+                throw e;
+            }
+        }
+        return upgraded;
+    }
+
+    /**
+     * Returns the shard containing the specified {@link Token}.
+     *
+     * @param token A {@link Token}.
+     * @return The shard containing {@code token}.
+     */
+    private LuceneIndex shard(Token token) {
+        return shards.length == 1 ? shards[0] : shards[tokenMapper.shard(token, shards.length)];
+    }
+
+    /**
+     * Updates the specified {@link Document} in the shard containing the specified {@link Token}, by first deleting the
+     * documents containing {@code Term} and then adding the new document.
+     *
+     * @param token    The {@link Token} of the document.
+     * @param term     The {@link Term} to identify the document(s) to be deleted.
+     * @param document The {@link Document} to be added.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void upsert(Token token, Term term, Document document) throws IOException {
+        shard(token).upsert(term, document);
+    }
+
+    /**
+     * Deletes all the {@link Document}s containing the specified {@link Term} in the shard containing the specified
+     * {@link Token}.
+     *
+     * @param token The {@link Token} of the documents.
+     * @param term  The {@link Term} to identify the documents to be deleted.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void delete(Token token, Term term) throws IOException {
+        shard(token).delete(term);
+    }
+
+    /**
+     * Deletes all the {@link Document}s satisfying the specified {@link Query} in the shard containing the specified
+     * {@link Token}.
+     *
+     * @param token The {@link Token} of the documents.
+     * @param query The {@link Query} to identify the documents to be deleted.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void delete(Token token, Query query) throws IOException {
+        shard(token).delete(query);
+    }
+
+    /**
+     * Deletes all the {@link Document}s.
+     *
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void truncate() throws IOException {
+        for (LuceneIndex shard : shards) {
+            shard.truncate();
+        }
+    }
+
+    /**
+     * Commits the pending changes.
+     *
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void commit() throws IOException {
+        for (LuceneIndex shard : shards) {
+            shard.commit();
+        }
+    }
+
+    /**
+     * Closes all the shards.
+     *
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void close() throws IOException {
+        for (LuceneIndex shard : shards) {
+            shard.close();
+        }
+        if (searchExecutor != null) {
+            searchExecutor.close();
+        }
+    }
+
+    /**
+     * Closes all the shards and removes all their files.
+     *
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void delete() throws IOException {
+        for (LuceneIndex shard : shards) {
+            shard.delete();
+        }
+        if (searchExecutor != null) {
+            searchExecutor.close();
+        }
+    }
+
+    /**
+     * Returns the shards that could contain the specified {@link Token} range.
+     *
+     * @param lower The lower {@link Token} of the searched range.
+     * @param upper The upper {@link Token} of the searched range.
+     * @return The shards overlapping the range, to be used with {@link #acquire(BitSet)}.
+     */
+    public BitSet shards(Token lower, Token upper) {
+        if (shards.length == 1) {
+            BitSet selected = new BitSet(1);
+            selected.set(0);
+            return selected;
+        }
+        return tokenMapper.shards(lower, upper, shards.length);
+    }
+
+    /**
+     * Returns an {@link IndexSearcher} for the shards that could contain the specified {@link Token} range. It must be
+     * released with {@link #release(IndexSearcher)} after use.
+     *
+     * @param lower The lower {@link Token} of the searched range.
+     * @param upper The upper {@link Token} of the searched range.
+     * @return An {@link IndexSearcher} for the shards overlapping the range.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public IndexSearcher acquire(Token lower, Token upper) throws IOException {
+        return acquire(shards(lower, upper));
+    }
+
+    /**
+     * Returns an {@link IndexSearcher} for the specified shards, as returned by {@link #shards(Token, Token)}. It must
+     * be released with {@link #release(IndexSearcher)} after use. The document ids of the searcher depend on the
+     * selected shards, so the hits of a searcher can only be used to search after in a searcher of the same shards.
+     *
+     * @param selected The shards to be searched.
+     * @return An {@link IndexSearcher} for the specified shards.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public IndexSearcher acquire(BitSet selected) throws IOException {
+        if (shards.length == 1) {
+            return shards[0].getSearcherManager().acquire();
+        }
+        LuceneIndex[] indexes = new LuceneIndex[selected.cardinality()];
+        IndexSearcher[] searchers = new IndexSearcher[indexes.length];
+        int numAcquired = 0;
+        try {
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                indexes[numAcquired] = shards[i];
+                searchers[numAcquired] = shards[i].getSearcherManager().acquire();
+                numAcquired++;
+            }
+            return ShardsSearcher.build(indexes, searchers, searchExecutor, filterCache, filterCachingPolicy);
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < numAcquired; i++) {
+                indexes[i].getSearcherManager().release(searchers[i]);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the specified {@link IndexSearcher}, which must have been acquired with {@link #acquire(BitSet)}.
+     *
+     * @param searcher The {@link IndexSearcher} to be released.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public void release(IndexSearcher searcher) throws IOException {
+        if (searcher instanceof ShardsSearcher) {
+            ((ShardsSearcher) searcher).release();
+        } else {
+            shards[0].getSearcherManager().release(searcher);
+        }
+    }
+
+    /**
+     * Finds the top {@code count} hits for {@code query} using the specified searcher, as it is done in {@link
+     * LuceneIndex#search(IndexSearcher, Query, Sort, ScoreDoc, Integer, boolean)}.
+     *
+     * @param searcher      The {@link IndexSearcher} to be used, as returned by {@link #acquire(BitSet)}.
+     * @param query         The {@link Query} to search for.
+     * @param sort          The {@link Sort} to be applied.
+     * @param after         The starting {@link ScoreDoc}.
+     * @param count         Return only the top {@code count} results.
+     * @param usesRelevance If the search must sorts results by relevance.
+     * @return The found hits, sorted according to the supplied {@link Sort} instance.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public ScoreDoc[] search(IndexSearcher searcher,
+                             Query query,
+                             Sort sort,
+                             ScoreDoc after,
+                             Integer count,
+                             boolean usesRelevance) throws IOException {
+        return shards[0].search(searcher, query, sort, after, count, usesRelevance); // All shards share the same sort
+    }
+
+    /**
+     * Returns the total number of {@link Document}s in this index.
+     *
+     * @return The total number of {@link Document}s in this index.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public long getNumDocs() throws IOException {
+        long numDocs = 0;
+        for (LuceneIndex shard : shards) {
+            numDocs += shard.getNumDocs();
+        }
+        return numDocs;
+    }
+
+    /**
+     * {@link IndexSearcher} over several shards, holding the shard searchers to be released.
+     */
+    private static final class ShardsSearcher extends SlicedIndexSearcher {
+
+        private final LuceneIndex[] indexes;
+        private final IndexSearcher[] searchers;
+
+        private ShardsSearcher(IndexReader reader,
+                               ExecutorService executor,
+                               LuceneIndex[] indexes,
+                               IndexSearcher[] searchers) {
+            super(reader, executor);
+            this.indexes = indexes;
+            this.searchers = searchers;
+        }
+
+        static ShardsSearcher build(LuceneIndex[] indexes,
+                                    IndexSearcher[] searchers,
+                                    ExecutorService executor,
+                                    LRUQueryCache filterCache,
+                                    QueryCachingPolicy filterCachingPolicy) throws IOException {
+            ShardsSearcher searcher;
+            if (searchers.length == 1) {
+                searcher = new ShardsSearcher(searchers[0].getIndexReader(), executor, indexes, searchers);
+            } else {
+                IndexReader[] readers = new IndexReader[searchers.length];
+                for (int i = 0; i < searchers.length; i++) {
+                    readers[i] = searchers[i].getIndexReader();
+                }
+                searcher = new ShardsSearcher(new MultiReader(readers, false), executor, indexes, searchers);
+            }
+            searcher.setSimilarity(new NoIDFSimilarity());
+            searcher.setQueryCache(filterCache);
+            if (filterCachingPolicy != null) {
+                searcher.setQueryCachingPolicy(filterCachingPolicy);
+            }
+            return searcher;
+        }
+
+        void release() throws IOException {
+            if (searchers.length > 1) {
+                getIndexReader().close();
+            }
+            for (int i = 0; i < searchers.length; i++) {
+                indexes[i].getSearcherManager().release(searchers[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link IndexSearcher} that, when it has an executor, searches its segments concurrently grouping the small segments
+ * into the same slice, so the cost of scheduling a task is not paid for tiny segments.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class SlicedIndexSearcher extends IndexSearcher {
+
+    /** The max number of documents in a slice, unless it is formed by a single larger segment. */
+    static final int MAX_DOCS_PER_SLICE = 250000;
+
+    /** The max number of segments in a slice. */
+    static final int MAX_SEGMENTS_PER_SLICE = 5;
+
+    /**
+     * Builds a new {@link SlicedIndexSearcher}.
+     *
+     * @param reader   The {@link IndexReader} to be searched.
+     * @param executor The {@link ExecutorService} to search the slices, maybe {@code null} meaning no concurrency.
+     */
+    public SlicedIndexSearcher(IndexReader reader, ExecutorService executor) {
+        super(reader, executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The segments are sorted by decreasing size, each segment with more than {@link #MAX_DOCS_PER_SLICE} documents
+     * gets its own slice, and the rest of segments are grouped in slices of up to {@link #MAX_DOCS_PER_SLICE} documents
+     * and {@link #MAX_SEGMENTS_PER_SLICE} segments.
+     */
+    @Override
+    protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        List<LeafReaderContext> sortedLeaves = new ArrayList<>(leaves);
+        Collections.sort(sortedLeaves, new Comparator<LeafReaderContext>() {
+            @Override
+            public int compare(LeafReaderContext o1, LeafReaderContext o2) {
+                return Integer.compare(o2.reader().maxDoc(), o1.reader().maxDoc());
+            }
+        });
+
+        List<LeafSlice> slices = new ArrayList<>();
+        List<LeafReaderContext> group = new ArrayList<>();
+        long groupDocs = 0;
+        for (LeafReaderContext leaf : sortedLeaves) {
+            int maxDoc = leaf.reader().maxDoc();
+            if (maxDoc > MAX_DOCS_PER_SLICE) {
+                slices.add(new LeafSlice(leaf));
+            } else {
+                group.add(leaf);
+                groupDocs += maxDoc;
+                if (groupDocs >= MAX_DOCS_PER_SLICE || group.size() >= MAX_SEGMENTS_PER_SLICE) {
+                    slices.add(new LeafSlice(group.toArray(new LeafReaderContext[group.size()])));
+                    group.clear();
+                    groupDocs = 0;
+                }
+            }
+        }
+        if (!group.isEmpty()) {
+            slices.add(new LeafSlice(group.toArray(new LeafReaderContext[group.size()])));
+        }
+        return slices.toArray(new LeafSlice[slices.size()]);
+    }
+}
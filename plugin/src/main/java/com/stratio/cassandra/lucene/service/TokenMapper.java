@@ -20,11 +20,16 @@ import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.RowPosition;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
 import org.apache.cassandra.dht.Token;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortField;
 
+import java.io.IOException;
+import java.util.BitSet;
+
 /**
  * Class for several row partitioning {@link Token} mappings between Cassandra and Lucene.
  *
@@ -42,6 +47,8 @@ public abstract class TokenMapper {
         IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
         if (partitioner instanceof Murmur3Partitioner) {
             return new TokenMapperMurmur();
+        } else if (partitioner instanceof RandomPartitioner) {
+            return new TokenMapperRandom();
         } else {
             return new TokenMapperGeneric();
         }
@@ -56,6 +63,16 @@ public abstract class TokenMapper {
      */
     public abstract void addFields(Document document, DecoratedKey partitionKey);
 
+    /**
+     * Returns the {@link Token} of the specified document, read from the doc values of the specified segment reader.
+     *
+     * @param reader A Lucene segment reader.
+     * @param docId  The document id inside {@code reader}.
+     * @return The {@link Token} of the specified document.
+     * @throws IOException If Lucene throws IO errors.
+     */
+    public abstract Token token(LeafReader reader, int docId) throws IOException;
+
     /**
      * Returns a Lucene {@link Query} for retrieving the documents inside the specified {@link Token} range.
      *
@@ -112,6 +129,33 @@ public abstract class TokenMapper {
      */
     public abstract SortField[] sortFields();
 
+    /**
+     * Returns the shard containing the specified {@link Token}, among the specified number of shards. This default
+     * implementation scatters the tokens by their hash code, so a token range can span any shard.
+     *
+     * @param token     A {@link Token}.
+     * @param numShards The number of shards.
+     * @return The shard containing {@code token}, between {@code 0} and {@code numShards - 1}.
+     */
+    public int shard(Token token, int numShards) {
+        return (token.hashCode() & Integer.MAX_VALUE) % numShards;
+    }
+
+    /**
+     * Returns the shards that could contain tokens of the specified {@link Token} range, among the specified number of
+     * shards. This default implementation returns all the shards.
+     *
+     * @param lower     The lower {@link Token} of the range.
+     * @param upper     The upper {@link Token} of the range.
+     * @param numShards The number of shards.
+     * @return The shards that could contain tokens of the range.
+     */
+    public BitSet shards(Token lower, Token upper, int numShards) {
+        BitSet shards = new BitSet(numShards);
+        shards.set(0, numShards);
+        return shards;
+    }
+
     /**
      * Returns {@code true} if the specified lower row position kind must be included in the filtered range, {@code
      * false} otherwise.
@@ -15,29 +15,36 @@
  */
 package com.stratio.cassandra.lucene.service;
 
+import com.stratio.cassandra.lucene.util.BinaryTermField;
 import com.stratio.cassandra.lucene.util.ByteBufferUtils;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.AbstractByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.dht.Token.TokenFactory;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
-import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FieldComparatorSource;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 /**
  * {@link TokenMapper} to be used when any {@link org.apache.cassandra.dht.IPartitioner} when there is not a more
- * specific implementation. It indexes the token raw binary value as a Lucene string field.
+ * specific implementation. It indexes the token raw binary value as a Lucene binary term.
+ *
+ * If the raw binary values have the same order as the tokens, as it happens with {@link
+ * AbstractByteOrderedPartitioner}, token ranges are searched seeking the term dictionary and tokens are sorted
+ * comparing ordinals. Otherwise, each indexed term must be decoded for comparing it.
  *
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
  */
@@ -46,26 +53,39 @@ public class TokenMapperGeneric extends TokenMapper {
     public static final String FIELD_NAME = "_token_generic"; // The Lucene field name
 
     private final TokenFactory factory; // The partitioner token factory
+    private final boolean byteComparable; // If the raw token bytes have the same order as the tokens
 
     /** Returns a new {@link TokenMapperGeneric}. */
     public TokenMapperGeneric() {
         super();
-        factory = DatabaseDescriptor.getPartitioner().getTokenFactory();
+        IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        factory = partitioner.getTokenFactory();
+        byteComparable = partitioner instanceof AbstractByteOrderedPartitioner;
     }
 
     /** {@inheritDoc} */
     @Override
     public void addFields(Document document, DecoratedKey partitionKey) {
-        ByteBuffer bb = factory.toByteArray(partitionKey.getToken());
-        String serialized = ByteBufferUtils.toString(bb);
-        BytesRef bytesRef = new BytesRef(serialized);
-        document.add(new StringField(FIELD_NAME, serialized, Store.NO));
+        BytesRef bytesRef = bytesRef(partitionKey.getToken());
+        document.add(new BinaryTermField(FIELD_NAME, bytesRef));
         document.add(new SortedDocValuesField(FIELD_NAME, bytesRef));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Token token(LeafReader reader, int docId) throws IOException {
+        SortedDocValues docValues = reader.getSortedDocValues(FIELD_NAME);
+        return token(docValues.get(docId));
+    }
+
     /** {@inheritDoc} */
     @Override
     protected Query makeQuery(Token lower, Token upper, boolean includeLower, boolean includeUpper) {
+        if (byteComparable) {
+            BytesRef start = lower == null || lower.isMinimum() ? null : bytesRef(lower);
+            BytesRef stop = upper == null || upper.isMinimum() ? null : bytesRef(upper);
+            return new TermRangeQuery(FIELD_NAME, start, stop, includeLower, includeUpper);
+        }
         return new TokenQuery(lower, upper, includeLower, includeUpper, this);
     }
 
@@ -80,6 +100,9 @@ public class TokenMapperGeneric extends TokenMapper {
     /** {@inheritDoc} */
     @Override
     public SortField[] sortFields() {
+        if (byteComparable) {
+            return new SortField[]{new SortField(FIELD_NAME, SortField.Type.STRING)};
+        }
         return new SortField[]{new SortField(FIELD_NAME, new FieldComparatorSource() {
             @Override
             public FieldComparator<?> newComparator(String field, int hits, int sort, boolean reversed)
@@ -101,21 +124,18 @@ public class TokenMapperGeneric extends TokenMapper {
      * @return The Cassandra {@link Token} represented by the specified Lucene {@link BytesRef}.
      */
     Token token(BytesRef bytesRef) {
-        String string = bytesRef.utf8ToString();
-        ByteBuffer bb = ByteBufferUtils.fromString(string);
-        return factory.fromByteArray(bb);
+        return factory.fromByteArray(ByteBufferUtils.byteBuffer(bytesRef));
     }
 
     /**
-     * Returns the Lucene {@link BytesRef} represented by the specified Cassandra {@link Token}.
+     * Returns the Lucene {@link BytesRef} represented by the specified Cassandra {@link Token}, which is the same as
+     * the indexed term.
      *
      * @param token A Cassandra {@link Token}.
      * @return The Lucene {@link BytesRef} represented by the specified Cassandra {@link Token}.
      */
     public BytesRef bytesRef(Token token) {
-        ByteBuffer bb = factory.toByteArray(token);
-        byte[] bytes = ByteBufferUtils.asArray(bb);
-        return new BytesRef(bytes);
+        return ByteBufferUtils.bytesRef(factory.toByteArray(token));
     }
 
 }
@@ -16,16 +16,22 @@
 package com.stratio.cassandra.lucene.service;
 
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.LongToken;
 import org.apache.cassandra.dht.Token;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.LongField;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortField;
 
+import java.io.IOException;
+import java.util.BitSet;
+
 /**
  * {@link PartitionKeyMapper} to be used when {@link org.apache.cassandra.dht.Murmur3Partitioner} is used. It indexes
  * the token long value as a Lucene long field.
@@ -60,6 +66,13 @@ public class TokenMapperMurmur extends TokenMapper {
         document.add(new LongField(FIELD_NAME, value, FIELD_TYPE));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Token token(LeafReader reader, int docId) throws IOException {
+        NumericDocValues docValues = reader.getNumericDocValues(FIELD_NAME);
+        return new LongToken(docValues.get(docId));
+    }
+
     /** {@inheritDoc} */
     @Override
     public Query query(Token token) {
@@ -84,6 +97,33 @@ public class TokenMapperMurmur extends TokenMapper {
         return NumericRangeQuery.newLongRange(FIELD_NAME, start, stop, includeLower, includeUpper);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The token ring is split in consecutive token ranges of the same size, so each token range only spans the shards
+     * that it overlaps.
+     */
+    @Override
+    public int shard(Token token, int numShards) {
+        long value = (Long) token.getTokenValue();
+        long position = (value ^ Long.MIN_VALUE) >>> 32; // Unsigned position in the ring, truncated to 32 bits
+        return (int) ((position * numShards) >>> 32);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public BitSet shards(Token lower, Token upper, int numShards) {
+        boolean toEnd = isMinimum(upper);
+        if (!toEnd && lower.compareTo(upper) > 0) { // Wrapping range
+            return super.shards(lower, upper, numShards);
+        }
+        int first = shard(lower, numShards);
+        int last = toEnd ? numShards - 1 : shard(upper, numShards);
+        BitSet shards = new BitSet(numShards);
+        shards.set(first, last + 1);
+        return shards;
+    }
+
     /** {@inheritDoc} */
     @Override
     public SortField[] sortFields() {
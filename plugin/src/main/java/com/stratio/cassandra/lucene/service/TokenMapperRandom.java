@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.stratio.cassandra.lucene.util.BinaryTermField;
+import com.stratio.cassandra.lucene.util.ByteBufferUtils;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.BigIntegerToken;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * {@link TokenMapper} to be used when {@link org.apache.cassandra.dht.RandomPartitioner} is used. It indexes the token
+ * as a fixed length unsigned binary value, so the order of the indexed terms is the same as the order of the tokens.
+ * This way, token ranges can be searched seeking the term dictionary, and tokens can be sorted comparing ordinals.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class TokenMapperRandom extends TokenMapper {
+
+    public static final String FIELD_NAME = "_token_random"; // The Lucene field name
+
+    /** The length of the encoded tokens, enough for holding the shifted token values between 0 and 2^127 + 1. */
+    private static final int LENGTH = 16;
+
+    /** Returns a new {@link TokenMapperRandom}. */
+    public TokenMapperRandom() {
+        super();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addFields(Document document, DecoratedKey partitionKey) {
+        BytesRef bytesRef = bytesRef(partitionKey.getToken());
+        document.add(new BinaryTermField(FIELD_NAME, bytesRef));
+        document.add(new SortedDocValuesField(FIELD_NAME, bytesRef));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Token token(LeafReader reader, int docId) throws IOException {
+        SortedDocValues docValues = reader.getSortedDocValues(FIELD_NAME);
+        return token(docValues.get(docId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Query query(Token token) {
+        return new TermQuery(new Term(FIELD_NAME, bytesRef(token)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Query makeQuery(Token lower, Token upper, boolean includeLower, boolean includeUpper) {
+        BytesRef start = lower == null || lower.isMinimum() ? null : bytesRef(lower);
+        BytesRef stop = upper == null || upper.isMinimum() ? null : bytesRef(upper);
+        if (start == null && stop == null) {
+            return null;
+        }
+        return new TermRangeQuery(FIELD_NAME, start, stop, includeLower, includeUpper);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SortField[] sortFields() {
+        return new SortField[]{new SortField(FIELD_NAME, SortField.Type.STRING)};
+    }
+
+    /**
+     * Returns the {@link Token} represented by the specified Lucene {@link BytesRef}.
+     *
+     * @param bytesRef A Lucene {@link BytesRef} representation of a {@link Token}.
+     * @return The {@link Token} represented by {@code bytesRef}.
+     */
+    static Token token(BytesRef bytesRef) {
+        BigInteger value = new BigInteger(1, ByteBufferUtils.byteBuffer(bytesRef).array());
+        return new BigIntegerToken(value.subtract(BigInteger.ONE));
+    }
+
+    /**
+     * Returns the order preserving Lucene {@link BytesRef} representation of the specified Cassandra {@link Token}.
+     *
+     * @param token A {@link BigIntegerToken}.
+     * @return The order preserving Lucene {@link BytesRef} representation of {@code token}.
+     */
+    static BytesRef bytesRef(Token token) {
+        BigInteger value = ((BigInteger) token.getTokenValue()).add(BigInteger.ONE); // Minimum token is -1
+        byte[] bytes = value.toByteArray();
+        byte[] fixedBytes = new byte[LENGTH];
+        int length = Math.min(bytes.length, LENGTH); // Skip the sign byte, if any
+        System.arraycopy(bytes, bytes.length - length, fixedBytes, LENGTH - length, length);
+        return new BytesRef(fixedBytes);
+    }
+}
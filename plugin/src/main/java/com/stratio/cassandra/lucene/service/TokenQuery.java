@@ -79,6 +79,32 @@ public class TokenQuery extends MultiTermQuery {
                                         .toString();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+
+        TokenQuery that = (TokenQuery) o;
+
+        if (includeLower != that.includeLower) return false;
+        if (includeUpper != that.includeUpper) return false;
+        if (lower != null ? !lower.equals(that.lower) : that.lower != null) return false;
+        return upper != null ? upper.equals(that.upper) : that.upper == null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (lower != null ? lower.hashCode() : 0);
+        result = 31 * result + (upper != null ? upper.hashCode() : 0);
+        result = 31 * result + (includeLower ? 1 : 0);
+        result = 31 * result + (includeUpper ? 1 : 0);
+        return result;
+    }
+
     /**
      * {@link FilteredTermsEnum} for generic tokens.
      */
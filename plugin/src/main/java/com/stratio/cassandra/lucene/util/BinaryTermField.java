@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Not stored Lucene {@link Field} indexing a single binary term, without the conversion to {@link String} needed by
+ * {@link org.apache.lucene.document.StringField}.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public final class BinaryTermField extends Field {
+
+    /** The type of the binary term fields, indexed without norms nor frequencies. */
+    public static final FieldType TYPE = new FieldType();
+
+    static {
+        TYPE.setIndexOptions(IndexOptions.DOCS);
+        TYPE.setOmitNorms(true);
+        TYPE.setTokenized(true);
+        TYPE.setStored(false);
+        TYPE.freeze();
+    }
+
+    /**
+     * Builds a new {@link BinaryTermField}.
+     *
+     * @param name  The name of the field.
+     * @param value The binary term to be indexed.
+     */
+    public BinaryTermField(String name, BytesRef value) {
+        super(name, new BinaryTokenStream(value), TYPE);
+    }
+
+    /** {@link TokenStream} producing a single binary term. */
+    private static final class BinaryTokenStream extends TokenStream {
+
+        private final BytesTermAttribute attribute = addAttribute(BytesTermAttribute.class);
+        private final BytesRef value;
+        private boolean available = true;
+
+        BinaryTokenStream(BytesRef value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (available) {
+                clearAttributes();
+                available = false;
+                attribute.setBytesRef(value);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            available = true;
+        }
+    }
+
+    /** {@link TermToBytesRefAttribute} whose term bytes can be set. */
+    public interface BytesTermAttribute extends TermToBytesRefAttribute {
+
+        /**
+         * Sets the term bytes.
+         *
+         * @param bytes The term bytes.
+         */
+        void setBytesRef(BytesRef bytes);
+    }
+
+    /** Default implementation of {@link BytesTermAttribute}, exposing always the same {@link BytesRef} instance. */
+    public static final class BytesTermAttributeImpl extends AttributeImpl
+            implements BytesTermAttribute, TermToBytesRefAttribute {
+
+        private final BytesRef bytes = new BytesRef();
+
+        @Override
+        public void fillBytesRef() {
+        }
+
+        @Override
+        public BytesRef getBytesRef() {
+            return bytes;
+        }
+
+        @Override
+        public void setBytesRef(BytesRef value) {
+            bytes.bytes = value.bytes;
+            bytes.offset = value.offset;
+            bytes.length = value.length;
+        }
+
+        @Override
+        public void clear() {
+            bytes.length = 0;
+        }
+
+        @Override
+        public void copyTo(AttributeImpl target) {
+            ((BytesTermAttribute) target).setBytesRef(bytes);
+        }
+
+        @Override
+        public BytesTermAttributeImpl clone() {
+            BytesTermAttributeImpl clone = new BytesTermAttributeImpl();
+            clone.setBytesRef(BytesRef.deepCopyOf(bytes));
+            return clone;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.Hex;
+import org.apache.lucene.util.BytesRef;
 
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -43,6 +44,31 @@ public class ByteBufferUtils {
         return bytes;
     }
 
+    /**
+     * Returns a {@link BytesRef} holding a copy of the readable bytes of the specified {@link ByteBuffer}.
+     *
+     * @param byteBuffer a {@link ByteBuffer} to be converted to {@link BytesRef}.
+     * @return the {@link BytesRef} representation of {@code byteBuffer}.
+     */
+    public static BytesRef bytesRef(ByteBuffer byteBuffer) {
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+        return new BytesRef(bytes);
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} holding a copy of the bytes of the specified {@link BytesRef}, which can be safely
+     * kept after the {@link BytesRef} is reused.
+     *
+     * @param bytesRef a {@link BytesRef} to be converted to {@link ByteBuffer}.
+     * @return the {@link ByteBuffer} representation of {@code bytesRef}.
+     */
+    public static ByteBuffer byteBuffer(BytesRef bytesRef) {
+        byte[] bytes = new byte[bytesRef.length];
+        System.arraycopy(bytesRef.bytes, bytesRef.offset, bytes, 0, bytesRef.length);
+        return ByteBuffer.wrap(bytes);
+    }
+
     public static boolean isEmpty(ByteBuffer byteBuffer) {
         return byteBuffer.remaining() == 0;
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coordinator of the commit requests of an index, so that concurrent requests share a single commit. Each commit
+ * request is satisfied by the first commit started after it. The first thread requesting a commit while there is no
+ * running commit runs it on behalf of all the requests received until it starts, while the rest just wait for it.
+ *
+ * Commits can be spaced by a max delay, so a commit is not started until that delay has passed since the start of the
+ * previous commit. This way, the frequent requests are grouped in fewer commits, and no request waits more than the
+ * max delay plus the duration of two commits.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class GroupCommitter {
+
+    private final Commit commit;
+    private final long maxDelayNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    private long requested; // The number of the last received request
+    private long committed; // The number of the last request satisfied by a completed commit
+    private boolean running;
+    private long lastStartNanos;
+
+    /**
+     * Returns a new {@link GroupCommitter} running the specified commit.
+     *
+     * @param commit     The commit to be run.
+     * @param maxDelayMs The max time in milliseconds that a commit can be delayed to be shared with more requests.
+     */
+    public GroupCommitter(Commit commit, long maxDelayMs) {
+        this.commit = commit;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.lastStartNanos = System.nanoTime() - maxDelayNanos;
+    }
+
+    /**
+     * Requests a commit, returning once a commit started after this call has been completed. If the commit run by this
+     * thread fails, the error is thrown to this thread, and the waiting requests are satisfied by a later commit.
+     *
+     * @throws IOException If the commit throws I/O errors.
+     */
+    public void commit() throws IOException {
+        requests.incrementAndGet();
+        long request;
+        synchronized (this) {
+            request = ++requested;
+            while (committed < request && running) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            if (committed >= request) {
+                return;
+            }
+            running = true;
+        }
+
+        boolean success = false;
+        long lastRequest = 0;
+        try {
+            long delayNanos;
+            while ((delayNanos = lastStartNanos + maxDelayNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+            lastStartNanos = System.nanoTime();
+            synchronized (this) {
+                lastRequest = requested;
+            }
+            commit.run();
+            commits.incrementAndGet();
+            success = true;
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (success) {
+                    committed = lastRequest;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of received commit requests.
+     *
+     * @return The number of commit requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of completed commits.
+     *
+     * @return The number of completed commits.
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /** A commit to be shared by several requests. */
+    public interface Commit {
+
+        /**
+         * Runs the commit.
+         *
+         * @throws IOException If there are I/O errors.
+         */
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records stored in a local directory as a sequence of segment files. Each record is
+ * written with its length and its checksum, so a torn record at the end of a segment is detected and ignored when the
+ * log is replayed.
+ *
+ * Writers append records to the current segment between {@link #acquire()} and {@link Segment#release()}, without any
+ * lock other than the one of the append itself. The log can be rotated to start a new segment, which waits for the
+ * writers of the previous segment to release it, so the work done by those writers after appending can be awaited
+ * before discarding the rotated segments.
+ *
+ * Records are synced to disk following the same policy as the Cassandra commit log. With a sync period, the current
+ * segment is synced periodically, so the records of the last period can be lost if the operating system crashes, as
+ * the mutations acknowledged by a periodic commit log. Without it, each append returns only once its record has been
+ * synced, sharing the sync with the concurrent appends, as a batch commit log. In both cases, rotated segments are
+ * synced before being closed, and the directory is synced when a segment file is created, so the segment itself is
+ * not lost.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class IndexingLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 12; // Record length and checksum
+
+    private final Path directory;
+    private final List<Long> replayableSegments;
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    private final boolean syncOnAppend;
+    private final ScheduledExecutorService syncer;
+
+    /**
+     * Opens the log stored in the specified directory, creating it if it doesn't exist, and syncing each appended
+     * record before returning. The already existing segments can be read with {@link #replay(RecordHandler)}, and a
+     * new segment is started for the new records.
+     *
+     * @param directory The directory where the segment files are stored.
+     * @throws IOException If there are I/O errors.
+     */
+    public IndexingLog(Path directory) throws IOException {
+        this(directory, 0);
+    }
+
+    /**
+     * Opens the log stored in the specified directory, creating it if it doesn't exist. The already existing segments
+     * can be read with {@link #replay(RecordHandler)}, and a new segment is started for the new records.
+     *
+     * @param directory    The directory where the segment files are stored.
+     * @param syncPeriodMs The period in milliseconds between the syncs of the current segment, or {@code 0} for syncing
+     *                     each appended record before returning.
+     * @throws IOException If there are I/O errors.
+     */
+    public IndexingLog(Path directory, long syncPeriodMs) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        replayableSegments = segmentIds();
+        long nextId = replayableSegments.isEmpty() ? 0 : replayableSegments.get(replayableSegments.size() - 1) + 1;
+        current.set(new Segment(nextId));
+        syncOnAppend = syncPeriodMs <= 0;
+        if (syncOnAppend) {
+            syncer = null;
+        } else {
+            String threadName = "IndexingLogSyncer:" + directory.getFileName();
+            syncer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(threadName));
+            syncer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sync();
+                    } catch (Exception e) {
+                        Log.error(e, "Error syncing indexing log %s", IndexingLog.this.directory);
+                    }
+                }
+            }, syncPeriodMs, syncPeriodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the directory where the segment files are stored.
+     *
+     * @return The directory where the segment files are stored.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                      name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private Path path(long id) {
+        return directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Returns the current segment, which must be released with {@link Segment#release()} once the appended records
+     * have been handed to their consumers.
+     *
+     * @return The current segment.
+     */
+    public Segment acquire() {
+        while (true) {
+            Segment segment = current.get();
+            segment.writers.incrementAndGet();
+            if (current.get() == segment) {
+                return segment;
+            }
+            segment.writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Syncs the current segment to disk.
+     *
+     * @throws IOException If there are I/O errors.
+     */
+    public void sync() throws IOException {
+        Segment segment = acquire();
+        try {
+            segment.sync();
+        } finally {
+            segment.release();
+        }
+    }
+
+    /**
+     * Syncs the directory to disk, so the creation of its segment files survives operating system crashes. Some
+     * platforms don't allow to sync directories, so the errors are just logged.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Log.debug(e, "Unable to sync indexing log directory %s", directory);
+        }
+    }
+
+    /**
+     * Starts a new segment, waiting for the writers of the previous one to release it. The previous segment is synced
+     * before being closed.
+     *
+     * @return The identifier of the rotated segment, to be used with {@link #discard(long)}.
+     * @throws IOException If there are I/O errors.
+     */
+    public synchronized long rotate() throws IOException {
+        Segment segment = current.get();
+        current.set(new Segment(segment.id + 1));
+        while (segment.writers.get() > 0) {
+            LockSupport.parkNanos(1000);
+        }
+        segment.sync();
+        segment.channel.close();
+        return segment.id;
+    }
+
+    /**
+     * Deletes the rotated segments with an identifier lower or equal than the specified one.
+     *
+     * @param id The identifier of the last segment to be deleted.
+     * @throws IOException If there are I/O errors.
+     */
+    public synchronized void discard(long id) throws IOException {
+        long currentId = current.get().id;
+        for (long segmentId : segmentIds()) {
+            if (segmentId <= id && segmentId != currentId) {
+                Files.deleteIfExists(path(segmentId));
+            }
+        }
+    }
+
+    /**
+     * Reads the records of the segments that existed when this log was opened, in the same order as they were
+     * appended. The records after the first torn or corrupt record of a segment are ignored.
+     *
+     * @param handler The handler of the read records.
+     * @return The number of read records.
+     * @throws IOException If there are I/O errors.
+     */
+    public long replay(RecordHandler handler) throws IOException {
+        long count = 0;
+        for (long id : replayableSegments) {
+            Path path = path(id);
+            long size = Files.size(path);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    byte[] record;
+                    try {
+                        int length = in.readInt();
+                        long checksum = in.readLong();
+                        if (length < 0 || length > size) {
+                            Log.warn("Ignoring corrupt tail of indexing log segment %s", path);
+                            break;
+                        }
+                        record = new byte[length];
+                        in.readFully(record);
+                        if (checksum(record) != checksum) {
+                            Log.warn("Ignoring corrupt tail of indexing log segment %s", path);
+                            break;
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    handler.handle(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Syncs and closes the current segment, keeping its records for the next replay.
+     *
+     * @throws IOException If there are I/O errors.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Segment segment = current.get();
+        segment.sync();
+        segment.channel.close();
+    }
+
+    private static long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return crc.getValue();
+    }
+
+    /** Handler of the records read during a log replay. */
+    public interface RecordHandler {
+
+        /**
+         * Handles the specified record.
+         *
+         * @param record A replayed record.
+         * @throws IOException If there are I/O errors.
+         */
+        void handle(byte[] record) throws IOException;
+    }
+
+    /** A segment file of the log. */
+    public final class Segment {
+
+        private final long id;
+        private final FileChannel channel;
+        private final AtomicInteger writers = new AtomicInteger();
+        private final GroupCommitter syncer;
+
+        private Segment(long id) throws IOException {
+            this.id = id;
+            this.channel = FileChannel.open(path(id),
+                                            StandardOpenOption.CREATE,
+                                            StandardOpenOption.WRITE,
+                                            StandardOpenOption.APPEND);
+            this.syncer = new GroupCommitter(new GroupCommitter.Commit() {
+                @Override
+                public void run() throws IOException {
+                    channel.force(false);
+                }
+            }, 0);
+            syncDirectory();
+        }
+
+        /**
+         * Appends the specified record to this segment. If the log has no sync period, the record is synced to disk
+         * before returning.
+         *
+         * @param record The record to be appended.
+         * @throws IOException If there are I/O errors.
+         */
+        public void append(byte[] record) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + record.length);
+            buffer.putInt(record.length);
+            buffer.putLong(checksum(record));
+            buffer.put(record);
+            buffer.flip();
+            synchronized (this) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            if (syncOnAppend) {
+                sync();
+            }
+        }
+
+        /**
+         * Syncs this segment to disk, sharing the sync with the concurrent requests.
+         *
+         * @throws IOException If there are I/O errors.
+         */
+        private void sync() throws IOException {
+            syncer.commit();
+        }
+
+        /**
+         * Releases this segment, which must have been previously acquired with {@link IndexingLog#acquire()}.
+         */
+        public void release() {
+            writers.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous executor of indexing tasks with a fixed number of worker threads. Tasks submitted with the same
+ * identifier are run orderly by the same worker. Each worker consumes a bounded multi-producer ring buffer where the
+ * producers claim slots with a compare and swap, so they never take any lock. Workers run all the published tasks in
+ * batches, parking only when their buffer is empty.
+ *
+ * Producers waiting for a full buffer park for bounded exponentially growing periods, rechecking for free slots after
+ * each one, so they are never parked indefinitely waiting for a signal. They stop waiting if the pipeline is closed,
+ * discarding their tasks. Waiting for the previously submitted tasks just waits for the workers to reach the sequences
+ * claimed before the call, without stopping the producers.
+ *
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class IndexingPipeline {
+
+    /** The max number of tasks run by a worker before updating the metrics. */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /** The min time that waiting threads park before rechecking. */
+    private static final long MIN_WAIT_NANOS = 1000;
+
+    /** The max time that waiting threads park before rechecking. */
+    private static final long MAX_WAIT_NANOS = 1000000;
+
+    private final Worker[] workers;
+
+    private final AtomicLong submittedTasks = new AtomicLong();
+    private final AtomicLong processedTasks = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong producerWaitNanos = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+
+    /**
+     * Returns a new {@link IndexingPipeline} with the specified number of started worker threads.
+     *
+     * @param name       The name of the worker threads.
+     * @param numThreads The number of worker threads.
+     * @param queuesSize The max number of tasks in each worker buffer before blocking.
+     */
+    public IndexingPipeline(String name, int numThreads, int queuesSize) {
+        NamedThreadFactory threadFactory = new NamedThreadFactory(name);
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker(queuesSize);
+            workers[i].thread = threadFactory.newThread(workers[i]);
+            workers[i].thread.start();
+        }
+    }
+
+    /**
+     * Submits a non value-returning task for asynchronous execution, waiting for a free slot if needed. The task is
+     * discarded if this pipeline has been closed.
+     *
+     * The specified identifier is used to choose the worker where the task will be run. The selection and load
+     * balancing is based in the {@link #hashCode()} of this identifier.
+     *
+     * @param id   The identifier of the task used to choose the worker where the task will be run.
+     * @param task A task to be queued for asynchronous execution.
+     */
+    public void submit(Object id, Runnable task) {
+        int i = Math.abs(id.hashCode() % workers.length);
+        if (workers[i].offer(new Task(task))) {
+            submittedTasks.incrementAndGet();
+        } else {
+            Log.debug("Discarding indexing task submitted after closing the pipeline");
+        }
+    }
+
+    /**
+     * Waits until all the tasks submitted before this call have been run. The tasks submitted during the wait are not
+     * waited for, and they are not blocked by this call.
+     */
+    public void await() {
+        long[] tickets = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            tickets[i] = workers[i].claimed.get();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            Worker worker = workers[i];
+            long waitNanos = MIN_WAIT_NANOS;
+            while (worker.consumed < tickets[i] && worker.running) {
+                LockSupport.parkNanos(waitNanos);
+                waitNanos = Math.min(waitNanos * 2, MAX_WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads, discarding the not run tasks and the tasks submitted after this call.
+     */
+    public void close() {
+        for (Worker worker : workers) {
+            worker.running = false;
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    /**
+     * Returns the number of submitted tasks that have not been run yet.
+     *
+     * @return The number of queued tasks.
+     */
+    public long getQueueSize() {
+        long size = 0;
+        for (Worker worker : workers) {
+            size += worker.claimed.get() - worker.consumed;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of submitted tasks.
+     *
+     * @return The number of submitted tasks.
+     */
+    public long getSubmittedTasks() {
+        return submittedTasks.get();
+    }
+
+    /**
+     * Returns the number of tasks that have been run.
+     *
+     * @return The number of run tasks.
+     */
+    public long getProcessedTasks() {
+        return processedTasks.get();
+    }
+
+    /**
+     * Returns the mean number of tasks run by a worker without parking.
+     *
+     * @return The mean number of tasks per batch.
+     */
+    public double getMeanBatchSize() {
+        long numBatches = batches.get();
+        return numBatches == 0 ? 0 : (double) processedTasks.get() / numBatches;
+    }
+
+    /**
+     * Returns the total time that the producers have been blocked waiting for free slots, in microseconds.
+     *
+     * @return The total producers blocking time in microseconds.
+     */
+    public long getProducerWaitMicros() {
+        return producerWaitNanos.get() / 1000;
+    }
+
+    /**
+     * Returns the mean time that the tasks have waited in the buffers before being run, in microseconds.
+     *
+     * @return The mean queue waiting time in microseconds.
+     */
+    public long getQueueWaitMeanMicros() {
+        long tasks = processedTasks.get();
+        return tasks == 0 ? 0 : queueWaitNanos.get() / tasks / 1000;
+    }
+
+    /**
+     * Returns the mean time spent running a task, in microseconds.
+     *
+     * @return The mean task running time in microseconds.
+     */
+    public long getProcessingMeanMicros() {
+        long tasks = processedTasks.get();
+        return tasks == 0 ? 0 : processingNanos.get() / tasks / 1000;
+    }
+
+    /** A submitted task with its submission time. */
+    private static final class Task {
+
+        private final Runnable runnable;
+        private final long queuedTime = System.nanoTime();
+
+        Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    /** A worker thread consuming a bounded multi-producer ring buffer of tasks. */
+    private final class Worker implements Runnable {
+
+        private final AtomicReferenceArray<Task> slots; // The published tasks
+        private final int capacity; // The number of slots
+        private final AtomicLong claimed = new AtomicLong(); // The next sequence to be claimed by producers
+        private volatile long consumed; // The next sequence to be run, only written by this worker
+        private volatile boolean idle; // If this worker is parked or about to park
+        private volatile boolean running = true;
+        private Thread thread;
+
+        Worker(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        private int slot(long sequence) {
+            return (int) (sequence % capacity);
+        }
+
+        boolean offer(Task task) {
+            long waitNanos = MIN_WAIT_NANOS;
+            long blockedTime = 0;
+            while (running) {
+                long sequence = claimed.get();
+                if (sequence - consumed < capacity) {
+                    if (claimed.compareAndSet(sequence, sequence + 1)) {
+                        if (blockedTime != 0) {
+                            producerWaitNanos.addAndGet(System.nanoTime() - blockedTime);
+                        }
+                        slots.set(slot(sequence), task); // Publish
+                        if (idle) {
+                            LockSupport.unpark(thread);
+                        }
+                        return true;
+                    }
+                } else {
+                    if (blockedTime == 0) {
+                        blockedTime = System.nanoTime();
+                    }
+                    LockSupport.parkNanos(waitNanos);
+                    waitNanos = Math.min(waitNanos * 2, MAX_WAIT_NANOS);
+                }
+            }
+            if (blockedTime != 0) {
+                producerWaitNanos.addAndGet(System.nanoTime() - blockedTime);
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            long sequence = consumed;
+            while (running) {
+                Task task = slots.get(slot(sequence));
+                if (task == null) {
+                    idle = true;
+                    if (running && slots.get(slot(sequence)) == null) {
+                        LockSupport.park(this); // Woken by the producers and close() after seeing idle
+                    }
+                    idle = false;
+                    continue;
+                }
+                int batchSize = 0;
+                long batchTime = System.nanoTime();
+                while (task != null && batchSize < MAX_BATCH_SIZE) {
+                    slots.set(slot(sequence), null);
+                    queueWaitNanos.addAndGet(System.nanoTime() - task.queuedTime);
+                    try {
+                        task.runnable.run();
+                    } catch (Throwable e) {
+                        Log.error(e, "Unrecoverable error during asynchronous indexing task");
+                    }
+                    consumed = ++sequence; // Free the slot
+                    batchSize++;
+                    task = slots.get(slot(sequence));
+                }
+                processingNanos.addAndGet(System.nanoTime() - batchTime);
+                processedTasks.addAndGet(batchSize);
+                batches.incrementAndGet();
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.stratio.cassandra.lucene.schema;
 
+import com.google.common.collect.Sets;
 import com.stratio.cassandra.lucene.schema.analysis.PreBuiltAnalyzers;
 import com.stratio.cassandra.lucene.schema.mapping.Mapper;
 import org.apache.cassandra.config.CFMetaData;
@@ -109,6 +110,16 @@ public class SchemaTest {
         schema.close();
     }
 
+    @Test
+    public void testGetMappedColumns() {
+        Schema schema = schema().mapper("field1", stringMapper())
+                                .mapper("field2", geoPointMapper("lat", "lon"))
+                                .mapper("field3", dateRangeMapper("from", "to"))
+                                .build();
+        assertEquals(Sets.newHashSet("field1", "lat", "lon", "from", "to"), schema.getMappedColumns());
+        schema.close();
+    }
+
     @Test
     public void testToString() {
 
@@ -29,6 +29,9 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.search.SortField;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -123,6 +126,11 @@ public class MapperTest {
             public void validate(CFMetaData metaData) {
 
             }
+
+            @Override
+            public List<String> getColumns() {
+                return Collections.singletonList("field");
+            }
         };
         assertEquals(expected, mapper.supports(candidateType));
     }
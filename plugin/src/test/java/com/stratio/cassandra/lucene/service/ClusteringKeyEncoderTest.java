@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.db.composites.CBuilder;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.composites.CompoundSparseCellNameType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.DecimalType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.ReversedType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class ClusteringKeyEncoderTest {
+
+    private static final CellNameType TYPE = new CompoundSparseCellNameType(Arrays.<AbstractType<?>>asList(
+            Int32Type.instance,
+            ReversedType.getInstance(UTF8Type.instance),
+            DoubleType.instance));
+
+    private final ClusteringKeyEncoder encoder = ClusteringKeyEncoder.instance(TYPE, 3);
+
+    private static CellName clusteringKey(int i, String s, double d) {
+        CBuilder builder = TYPE.builder();
+        builder.add(Int32Type.instance.decompose(i));
+        builder.add(UTF8Type.instance.decompose(s));
+        builder.add(DoubleType.instance.decompose(d));
+        return TYPE.rowMarker(builder.build());
+    }
+
+    private List<CellName> clusteringKeys() {
+        List<CellName> clusteringKeys = new ArrayList<>();
+        for (int i : new int[]{Integer.MIN_VALUE, -256, -1, 0, 1, 255, 256, Integer.MAX_VALUE}) {
+            for (String s : new String[]{"", "\u0000", "\u0000a", "a", "a\u0000", "ab", "b", "á"}) {
+                for (double d : new double[]{Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, 2.5, Double.MAX_VALUE}) {
+                    clusteringKeys.add(clusteringKey(i, s, d));
+                }
+            }
+        }
+        return clusteringKeys;
+    }
+
+    @Test
+    public void testUnsupported() {
+        CellNameType type = new CompoundSparseCellNameType(Arrays.<AbstractType<?>>asList(Int32Type.instance,
+                                                                                          DecimalType.instance));
+        assertNull(ClusteringKeyEncoder.instance(type, 2));
+        assertNotNull(ClusteringKeyEncoder.instance(type, 1));
+    }
+
+    @Test
+    public void testOrder() {
+        List<CellName> expected = clusteringKeys();
+        Collections.shuffle(expected);
+        List<CellName> actual = new ArrayList<>(expected);
+        Collections.sort(expected, TYPE);
+        Collections.sort(actual, new Comparator<CellName>() {
+            @Override
+            public int compare(CellName o1, CellName o2) {
+                return encoder.encode(o1).compareTo(encoder.encode(o2));
+            }
+        });
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testDecode() {
+        for (CellName clusteringKey : clusteringKeys()) {
+            CellName decoded = encoder.decode(encoder.encode(clusteringKey));
+            assertEquals(0, TYPE.compare(clusteringKey, decoded));
+        }
+    }
+
+    @Test
+    public void testPrefix() {
+        CellName clusteringKey = clusteringKey(3, "a", 1.0);
+        Composite prefix = TYPE.builder().add(Int32Type.instance.decompose(3)).build();
+        BytesRef encodedKey = encoder.encode(clusteringKey);
+        BytesRef encodedPrefix = encoder.encode(prefix);
+        assertTrue(StringHelper.startsWith(encodedKey, encodedPrefix));
+    }
+}
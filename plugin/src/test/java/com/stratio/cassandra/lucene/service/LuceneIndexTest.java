@@ -17,11 +17,15 @@ package com.stratio.cassandra.lucene.service;
 
 import com.google.common.collect.Sets;
 import com.stratio.cassandra.lucene.IndexConfig;
+import com.stratio.cassandra.lucene.util.BinaryTermField;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
@@ -31,6 +35,7 @@ import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.junit.Rule;
 import org.junit.Test;
@@ -44,6 +49,8 @@ import java.util.Set;
 import java.util.UUID;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * @author Andres de la Pena {@literal <adelapena@stratio.com>}
@@ -68,6 +75,7 @@ public class LuceneIndexTest {
                                             IndexConfig.DEFAULT_RAM_BUFFER_MB,
                                             IndexConfig.DEFAULT_MAX_MERGE_MB,
                                             IndexConfig.DEFAULT_MAX_CACHED_MB,
+                                            IndexConfig.DEFAULT_FILTER_CACHE_MB,
                                             new StandardAnalyzer(),
                                             REFRESH_SECONDS,
                                             null);
@@ -77,13 +85,13 @@ public class LuceneIndexTest {
 
         Term term1 = new Term("field", "value1");
         Document document1 = new Document();
-        document1.add(new StringField("field", "value1", Field.Store.NO));
+        document1.add(new StringField("field", "value1", Field.Store.YES));
         document1.add(new SortedDocValuesField("field", new BytesRef("value1")));
         index.upsert(term1, document1);
 
         Term term2 = new Term("field", "value2");
         Document document2 = new Document();
-        document2.add(new StringField("field", "value2", Field.Store.NO));
+        document2.add(new StringField("field", "value2", Field.Store.YES));
         document2.add(new SortedDocValuesField("field", new BytesRef("value2")));
         index.upsert(term2, document2);
 
@@ -93,30 +101,33 @@ public class LuceneIndexTest {
 
         Query query = new WildcardQuery(new Term("field", "value*"));
         Set<String> fields = Sets.newHashSet("field");
-        Map<Document, ScoreDoc> results;
+        ScoreDoc[] results;
 
         // Search
         SearcherManager searcherManager = index.getSearcherManager();
         IndexSearcher searcher = searcherManager.acquire();
 
         try {
-            results = index.search(searcher, query, null, null, 1, fields, true);
-            assertEquals(1, results.size());
-            ScoreDoc last1 = results.values().iterator().next();
-            results = index.search(searcher, query, null, last1, 1, fields, true);
-            assertEquals(1, results.size());
-
-            results = index.search(searcher, query, null, null, 1, fields, false);
-            assertEquals(1, results.size());
-            ScoreDoc last2 = results.values().iterator().next();
-            results = index.search(searcher, query, null, last2, 1, fields, false);
-            assertEquals(1, results.size());
-
-            results = index.search(searcher, query, sort, null, 1, fields, false);
-            assertEquals(1, results.size());
-            ScoreDoc last3 = results.values().iterator().next();
-            results = index.search(searcher, query, sort, last3, 1, fields, false);
-            assertEquals(1, results.size());
+            results = index.search(searcher, query, null, null, 1, true);
+            assertEquals(1, results.length);
+            ScoreDoc last1 = results[0];
+            results = index.search(searcher, query, null, last1, 1, true);
+            assertEquals(1, results.length);
+
+            results = index.search(searcher, query, null, null, 1, false);
+            assertEquals(1, results.length);
+            ScoreDoc last2 = results[0];
+            results = index.search(searcher, query, null, last2, 1, false);
+            assertEquals(1, results.length);
+
+            results = index.search(searcher, query, sort, null, 1, false);
+            assertEquals(1, results.length);
+            ScoreDoc last3 = results[0];
+            results = index.search(searcher, query, sort, last3, 1, false);
+            assertEquals(1, results.length);
+
+            Document document = index.document(searcher, results[0].doc, fields);
+            assertEquals("value2", document.get("field"));
         } finally {
             searcherManager.release(searcher);
         }
@@ -156,4 +167,88 @@ public class LuceneIndexTest {
         // Cleanup
         folder.delete();
     }
+
+    private LuceneIndex index(Path path) {
+        return new LuceneIndex("ks",
+                               "cf",
+                               "idx",
+                               path,
+                               IndexConfig.DEFAULT_RAM_BUFFER_MB,
+                               IndexConfig.DEFAULT_MAX_MERGE_MB,
+                               IndexConfig.DEFAULT_MAX_CACHED_MB,
+                               IndexConfig.DEFAULT_FILTER_CACHE_MB,
+                               new StandardAnalyzer(),
+                               REFRESH_SECONDS,
+                               null);
+    }
+
+    @Test
+    public void testBinaryTerms() throws IOException, InterruptedException {
+
+        Path path = Paths.get(folder.newFolder("directory" + UUID.randomUUID()).getPath());
+        LuceneIndex index = index(path);
+        index.init(new Sort());
+
+        BytesRef value = new BytesRef(new byte[]{0, (byte) 0x80, (byte) 0xFF});
+        Term term = new Term("field", value);
+        Document document = new Document();
+        document.add(new BinaryTermField("field", value));
+        index.upsert(term, document);
+        index.upsert(term, document);
+        index.commit();
+        Thread.sleep(WAIT_MILLISECONDS);
+        assertEquals(1, index.getNumDocs());
+
+        index.delete(term);
+        index.commit();
+        Thread.sleep(WAIT_MILLISECONDS);
+        assertEquals(0, index.getNumDocs());
+
+        index.delete();
+        folder.delete();
+    }
+
+    @Test
+    public void testFormatVersion() throws IOException {
+
+        Path path = Paths.get(folder.newFolder("directory" + UUID.randomUUID()).getPath());
+        LuceneIndex index = index(path);
+        index.init(new Sort());
+        assertEquals(LuceneIndex.FORMAT_VERSION, index.getFormatVersion());
+        index.close();
+
+        try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(path))) {
+            Map<String, String> commitData = reader.getIndexCommit().getUserData();
+            assertEquals(LuceneIndex.FORMAT_VERSION, LuceneIndex.formatVersion(commitData));
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void testOldFormatVersion() throws IOException {
+
+        Path path = Paths.get(folder.newFolder("directory" + UUID.randomUUID()).getPath());
+        try (IndexWriter writer = new IndexWriter(FSDirectory.open(path), new IndexWriterConfig(null))) {
+            Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+        }
+
+        LuceneIndex index = index(path);
+        assertTrue("Indexes with an old format version should be upgraded", index.init(new Sort()));
+        assertEquals(0, index.getNumDocs());
+        index.close();
+
+        try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(path))) {
+            assertEquals(0, reader.numDocs());
+            Map<String, String> commitData = reader.getIndexCommit().getUserData();
+            assertEquals(LuceneIndex.FORMAT_VERSION, LuceneIndex.formatVersion(commitData));
+        }
+
+        index = index(path);
+        assertFalse("Upgraded indexes shouldn't be upgraded again", index.init(new Sort()));
+        index.close();
+        folder.delete();
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class RowComparatorTest {
+
+    private static final Comparator<Integer> TENS = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer i1, Integer i2) {
+            return Integer.compare(i1 / 10, i2 / 10);
+        }
+    };
+
+    @Test
+    public void testMergeEmpty() {
+        List<Integer> merged = RowComparator.merge(Collections.<Integer>emptyList(), TENS);
+        assertEquals(Collections.<Integer>emptyList(), merged);
+    }
+
+    @Test
+    public void testMergeSingleRun() {
+        List<Integer> merged = RowComparator.merge(Arrays.asList(10, 20, 30), TENS);
+        assertEquals(Arrays.asList(10, 20, 30), merged);
+    }
+
+    @Test
+    public void testMergeSeveralRuns() {
+        List<Integer> merged = RowComparator.merge(Arrays.asList(10, 40, 50, 20, 30, 60, 0, 70), TENS);
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60, 70), merged);
+    }
+
+    @Test
+    public void testMergeKeepsRunsOrderInTies() {
+        List<Integer> merged = RowComparator.merge(Arrays.asList(10, 21, 30, 22, 31, 23), TENS);
+        assertEquals(Arrays.asList(10, 21, 22, 23, 30, 31), merged);
+    }
+
+    @Test
+    public void testScoringOrder() {
+        float[] scores = new float[]{0.5f, 2.0f, -1.0f, 0.5f, 0.0f, 2.0f, -0.0f};
+        int[] positions = RowComparatorScoring.order(scores);
+        assertEquals(Arrays.toString(new int[]{1, 5, 0, 3, 4, 6, 2}), Arrays.toString(positions));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.stratio.cassandra.lucene.schema.Schema;
+import com.stratio.cassandra.lucene.schema.analysis.PreBuiltAnalyzers;
+import com.stratio.cassandra.lucene.schema.mapping.Mapper;
+import com.stratio.cassandra.lucene.schema.mapping.StringMapper;
+import com.stratio.cassandra.lucene.search.Search;
+import org.apache.lucene.search.Query;
+import org.junit.Test;
+
+import static com.stratio.cassandra.lucene.search.SearchBuilders.match;
+import static com.stratio.cassandra.lucene.search.SearchBuilders.search;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class SearchCacheTest {
+
+    private static SearchCache searchCache(String name) {
+        Mapper mapper = new StringMapper("field", true, true, true);
+        Schema schema = mock(Schema.class);
+        when(schema.getAnalyzer()).thenReturn(PreBuiltAnalyzers.STANDARD.get());
+        when(schema.getMapper("field")).thenReturn(mapper);
+        return new SearchCache("ks", "cf", name, schema, 10);
+    }
+
+    @Test
+    public void testSearch() {
+        SearchCache cache = searchCache("testSearch");
+        String json = search().query(match("field", "value")).toJson();
+        Search search = cache.search(json);
+        assertNotNull(search);
+        assertSame(search, cache.search(json));
+        assertEquals(1, cache.getSearchHits());
+        assertEquals(1, cache.getSearchMisses());
+        assertEquals(1, cache.getSize());
+        cache.close();
+    }
+
+    @Test
+    public void testQuery() {
+        SearchCache cache = searchCache("testQuery");
+        Search search = cache.search(search().filter(match("field", "value")).toJson());
+        Query query = cache.query(search);
+        assertNotNull(query);
+        assertSame(query, cache.query(search));
+        assertEquals(1, cache.getQueryHits());
+        assertEquals(1, cache.getQueryMisses());
+        cache.close();
+    }
+
+    @Test
+    public void testQueryWithoutConditions() {
+        SearchCache cache = searchCache("testQueryWithoutConditions");
+        Search search = cache.search(search().toJson());
+        assertNull(cache.query(search));
+        assertNull(cache.query(search));
+        assertEquals(1, cache.getQueryHits());
+        cache.close();
+    }
+
+    @Test
+    public void testClear() {
+        SearchCache cache = searchCache("testClear");
+        cache.search(search().toJson());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        cache.close();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testValidateWrongField() {
+        SearchCache cache = searchCache("testValidateWrongField");
+        try {
+            cache.validate(search().filter(match("unknown", "value")).toJson());
+        } finally {
+            cache.close();
+        }
+    }
+}
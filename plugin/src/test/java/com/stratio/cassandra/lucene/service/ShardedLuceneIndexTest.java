@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import com.google.common.collect.Sets;
+import com.stratio.cassandra.lucene.IndexConfig;
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class ShardedLuceneIndexTest {
+
+    private static final int NUM_SHARDS = 4;
+    private static final int NUM_DOCS = 40;
+    private static final Double REFRESH_SECONDS = 0.1D;
+    private static final Token MINIMUM = new LongToken(Long.MIN_VALUE);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Token token(int i) {
+        return new LongToken(Long.MIN_VALUE + (Long.MAX_VALUE / NUM_DOCS) * 2 * i + 1);
+    }
+
+    private static String value(int i) {
+        return String.format("value%02d", NUM_DOCS - 1 - i); // Sorted in reverse token order
+    }
+
+    private ShardedLuceneIndex index() throws IOException, InterruptedException {
+        TokenMapper tokenMapper = new TokenMapperMurmur() {
+            @Override
+            public boolean isMinimum(Token token) {
+                return token.equals(MINIMUM);
+            }
+        };
+        Path path = folder.newFolder("index").toPath();
+        ShardedLuceneIndex index = new ShardedLuceneIndex("ks",
+                                                          "cf",
+                                                          "idx",
+                                                          path,
+                                                          IndexConfig.DEFAULT_RAM_BUFFER_MB,
+                                                          IndexConfig.DEFAULT_MAX_MERGE_MB,
+                                                          IndexConfig.DEFAULT_MAX_CACHED_MB,
+                                                          IndexConfig.DEFAULT_FILTER_CACHE_MB,
+                                                          new StandardAnalyzer(),
+                                                          REFRESH_SECONDS,
+                                                          tokenMapper,
+                                                          NUM_SHARDS,
+                                                          0);
+        index.init(new Sort(new SortField("field", SortField.Type.STRING)));
+        for (int i = 0; i < NUM_DOCS; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", value(i), Field.Store.YES));
+            document.add(new StringField("common", "common", Field.Store.NO));
+            document.add(new SortedDocValuesField("field", new BytesRef(value(i))));
+            index.upsert(token(i), new Term("field", value(i)), document);
+        }
+        index.commit();
+        Thread.sleep((long) (REFRESH_SECONDS * 2000));
+        assertEquals(NUM_DOCS, index.getNumDocs());
+        return index;
+    }
+
+    private static List<String> page(ShardedLuceneIndex index, BitSet shards, boolean relevance) throws IOException {
+        Query query = new TermQuery(new Term("common", "common"));
+        List<String> values = new ArrayList<>();
+        ScoreDoc after = null;
+        while (true) {
+            IndexSearcher searcher = index.acquire(shards);
+            try {
+                ScoreDoc[] scoreDocs = index.search(searcher, query, null, after, 7, relevance);
+                if (scoreDocs.length == 0) {
+                    return values;
+                }
+                for (ScoreDoc scoreDoc : scoreDocs) {
+                    Document document = searcher.doc(scoreDoc.doc, Sets.newHashSet("field"));
+                    values.add(document.get("field"));
+                }
+                after = scoreDocs[scoreDocs.length - 1];
+            } finally {
+                index.release(searcher);
+            }
+        }
+    }
+
+    @Test
+    public void testPaging() throws IOException, InterruptedException {
+        ShardedLuceneIndex index = index();
+        try {
+            BitSet shards = index.shards(MINIMUM, MINIMUM);
+            assertEquals(NUM_SHARDS, shards.cardinality());
+
+            // Pages after the first one start at tokens that don't overlap all the shards containing hits
+            assertTrue(index.shards(token(NUM_DOCS / 2), MINIMUM).cardinality() < NUM_SHARDS);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = NUM_DOCS - 1; i >= 0; i--) {
+                expected.add(value(i));
+            }
+            assertEquals(expected, page(index, shards, false));
+            assertEquals(expected, page(index, shards, true));
+        } finally {
+            index.delete();
+        }
+    }
+}
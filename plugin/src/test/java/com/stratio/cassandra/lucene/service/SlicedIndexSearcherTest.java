@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class SlicedIndexSearcherTest {
+
+    @Test
+    public void testSmallSegmentsSlices() throws IOException {
+        Directory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter writer = new IndexWriter(directory, config);
+        for (int i = 0; i < 7; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", "value" + i, Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+        }
+        writer.close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertEquals(7, reader.leaves().size());
+            SlicedIndexSearcher searcher = new SlicedIndexSearcher(reader, executor);
+            LeafSlice[] slices = searcher.slices(reader.leaves());
+            assertEquals(2, slices.length);
+            assertEquals(7, searcher.search(new MatchAllDocsQuery(), 10).totalHits);
+        } finally {
+            executor.shutdownNow();
+            directory.close();
+        }
+    }
+
+    @Test
+    public void testNoSegmentsSlices() throws IOException {
+        Directory directory = new RAMDirectory();
+        new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer())).close();
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            SlicedIndexSearcher searcher = new SlicedIndexSearcher(reader, null);
+            assertEquals(0, searcher.slices(reader.leaves()).length);
+        } finally {
+            directory.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.dht.LongToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class TokenMapperMurmurTest {
+
+    private final TokenMapperMurmur mapper = new TokenMapperMurmur();
+
+    @Test
+    public void testShard() {
+        assertEquals(0, mapper.shard(new LongToken(Long.MIN_VALUE), 4));
+        assertEquals(1, mapper.shard(new LongToken(-1L), 4));
+        assertEquals(2, mapper.shard(new LongToken(0L), 4));
+        assertEquals(3, mapper.shard(new LongToken(Long.MAX_VALUE), 4));
+    }
+
+    @Test
+    public void testShardMonotonic() {
+        int last = 0;
+        for (long value = Long.MIN_VALUE; value < Long.MAX_VALUE - Long.MAX_VALUE / 50; value += Long.MAX_VALUE / 50) {
+            int shard = mapper.shard(new LongToken(value), 7);
+            assertTrue(shard >= last);
+            assertTrue(shard < 7);
+            last = shard;
+        }
+        assertEquals(6, last);
+    }
+
+    @Test
+    public void testShardSingle() {
+        assertEquals(0, mapper.shard(new LongToken(Long.MIN_VALUE), 1));
+        assertEquals(0, mapper.shard(new LongToken(0L), 1));
+        assertEquals(0, mapper.shard(new LongToken(Long.MAX_VALUE), 1));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.service;
+
+import org.apache.cassandra.dht.BigIntegerToken;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class TokenMapperRandomTest {
+
+    private static final BigInteger MAX = BigInteger.valueOf(2).pow(127);
+
+    @Test
+    public void testRoundTrip() {
+        for (BigInteger value : new BigInteger[]{BigInteger.ONE.negate(),
+                                                 BigInteger.ZERO,
+                                                 BigInteger.valueOf(127),
+                                                 BigInteger.valueOf(128),
+                                                 BigInteger.valueOf(Long.MAX_VALUE),
+                                                 MAX.subtract(BigInteger.ONE),
+                                                 MAX}) {
+            Token token = new BigIntegerToken(value);
+            assertEquals(token, TokenMapperRandom.token(TokenMapperRandom.bytesRef(token)));
+        }
+    }
+
+    @Test
+    public void testOrderPreserving() {
+        BigInteger step = MAX.divide(BigInteger.valueOf(1000)).add(BigInteger.valueOf(255));
+        BytesRef last = TokenMapperRandom.bytesRef(new BigIntegerToken(BigInteger.ONE.negate()));
+        for (BigInteger value = BigInteger.ZERO; value.compareTo(MAX) <= 0; value = value.add(step)) {
+            BytesRef bytesRef = TokenMapperRandom.bytesRef(new BigIntegerToken(value));
+            assertTrue(bytesRef.compareTo(last) > 0);
+            last = bytesRef;
+        }
+    }
+
+    @Test
+    public void testFixedLength() {
+        assertEquals(16, TokenMapperRandom.bytesRef(new BigIntegerToken(BigInteger.ZERO)).length);
+        assertEquals(16, TokenMapperRandom.bytesRef(new BigIntegerToken(BigInteger.ONE.negate())).length);
+        assertEquals(16, TokenMapperRandom.bytesRef(new BigIntegerToken(MAX)).length);
+    }
+}
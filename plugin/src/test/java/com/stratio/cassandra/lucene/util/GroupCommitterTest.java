@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class GroupCommitterTest {
+
+    @Test
+    public void testSequential() throws IOException {
+        final AtomicInteger counter = new AtomicInteger();
+        GroupCommitter committer = new GroupCommitter(new GroupCommitter.Commit() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        }, 0);
+        for (int i = 0; i < 10; i++) {
+            committer.commit();
+        }
+        assertEquals(10, counter.get());
+        assertEquals(10, committer.getRequests());
+        assertEquals(10, committer.getCommits());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger durable = new AtomicInteger();
+        final GroupCommitter committer = new GroupCommitter(new GroupCommitter.Commit() {
+            @Override
+            public void run() {
+                int value = written.get();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                durable.set(value);
+            }
+        }, 10);
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        int value = written.incrementAndGet();
+                        try {
+                            committer.commit();
+                        } catch (IOException e) {
+                            failed.set(true);
+                        }
+                        if (durable.get() < value) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(false, failed.get());
+        assertEquals(80, committer.getRequests());
+        assertTrue(committer.getCommits() < 80);
+    }
+
+    @Test
+    public void testFailure() throws IOException {
+        final AtomicBoolean fail = new AtomicBoolean(true);
+        GroupCommitter committer = new GroupCommitter(new GroupCommitter.Commit() {
+            @Override
+            public void run() throws IOException {
+                if (fail.get()) {
+                    throw new IOException("Failing commit");
+                }
+            }
+        }, 0);
+        try {
+            committer.commit();
+            fail("Commit should fail");
+        } catch (IOException e) {
+            assertEquals("Failing commit", e.getMessage());
+        }
+        fail.set(false);
+        committer.commit();
+        assertEquals(2, committer.getRequests());
+        assertEquals(1, committer.getCommits());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class IndexingLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void append(IndexingLog log, String... records) throws IOException {
+        IndexingLog.Segment segment = log.acquire();
+        try {
+            for (String record : records) {
+                segment.append(record.getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            segment.release();
+        }
+    }
+
+    private static List<String> replay(IndexingLog log) throws IOException {
+        final List<String> records = new ArrayList<>();
+        long count = log.replay(new IndexingLog.RecordHandler() {
+            @Override
+            public void handle(byte[] record) {
+                records.add(new String(record, StandardCharsets.UTF_8));
+            }
+        });
+        assertEquals(records.size(), count);
+        return records;
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        IndexingLog log = new IndexingLog(directory);
+        assertEquals(0, replay(log).size());
+        append(log, "a", "b");
+        log.rotate();
+        append(log, "c");
+        log.close();
+
+        log = new IndexingLog(directory);
+        assertEquals(Arrays.asList("a", "b", "c"), replay(log));
+        append(log, "d");
+        log.close();
+
+        log = new IndexingLog(directory);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), replay(log));
+        log.close();
+    }
+
+    @Test
+    public void testPeriodicSync() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        IndexingLog log = new IndexingLog(directory, 10);
+        append(log, "a", "b");
+        log.sync();
+        log.rotate();
+        append(log, "c");
+        log.close();
+
+        log = new IndexingLog(directory, 10);
+        assertEquals(Arrays.asList("a", "b", "c"), replay(log));
+        log.close();
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        IndexingLog log = new IndexingLog(directory);
+        append(log, "a");
+        long segment = log.rotate();
+        append(log, "b");
+        log.discard(segment);
+        log.close();
+
+        log = new IndexingLog(directory);
+        assertEquals(Arrays.asList("b"), replay(log));
+        log.discard(log.rotate());
+        log.close();
+
+        log = new IndexingLog(directory);
+        assertEquals(0, replay(log).size());
+        log.close();
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        IndexingLog log = new IndexingLog(directory);
+        append(log, "a", "b");
+        log.close();
+        Path file = directory.resolve("segment-0.log");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1), StandardOpenOption.TRUNCATE_EXISTING);
+
+        log = new IndexingLog(directory);
+        assertEquals(Arrays.asList("a"), replay(log));
+        log.close();
+    }
+
+    @Test
+    public void testCorruptRecord() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        IndexingLog log = new IndexingLog(directory);
+        append(log, "a", "b", "c");
+        log.close();
+        Path file = directory.resolve("segment-0.log");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[2 * 13 - 1] ^= 0xFF; // Payload of the second record
+        Files.write(file, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+        log = new IndexingLog(directory);
+        assertEquals(Arrays.asList("a"), replay(log));
+        log.close();
+    }
+}
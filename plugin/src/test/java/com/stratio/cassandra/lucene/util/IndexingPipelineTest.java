@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.lucene.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author Andres de la Pena {@literal <adelapena@stratio.com>}
+ */
+public class IndexingPipelineTest {
+
+    @Test
+    public void testOrderById() {
+        IndexingPipeline pipeline = new IndexingPipeline("test", 3, 2);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 1000; i++) {
+            final int value = i;
+            pipeline.submit("id", new Runnable() {
+                @Override
+                public void run() {
+                    executed.add(value);
+                }
+            });
+        }
+        pipeline.await();
+        assertEquals(1000, executed.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, executed.get(i).intValue());
+        }
+        assertEquals(0, pipeline.getQueueSize());
+        assertEquals(1000, pipeline.getProcessedTasks());
+        pipeline.close();
+    }
+
+    @Test
+    public void testAwait() throws InterruptedException {
+        final IndexingPipeline pipeline = new IndexingPipeline("test", 4, 8);
+        final AtomicInteger counter = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int producer = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 500; i++) {
+                        pipeline.submit(producer * 1000 + i, new Runnable() {
+                            @Override
+                            public void run() {
+                                counter.incrementAndGet();
+                            }
+                        });
+                    }
+                }
+            };
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        pipeline.await();
+        assertEquals(2000, counter.get());
+        assertEquals(2000, pipeline.getSubmittedTasks());
+        pipeline.close();
+    }
+
+    @Test
+    public void testFailingTask() {
+        IndexingPipeline pipeline = new IndexingPipeline("test", 1, 4);
+        final AtomicInteger counter = new AtomicInteger();
+        pipeline.submit(1, new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected failure");
+            }
+        });
+        pipeline.submit(1, new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        });
+        pipeline.await();
+        assertEquals(1, counter.get());
+        pipeline.close();
+    }
+
+    @Test
+    public void testSubmitToFullClosedPipeline() throws InterruptedException {
+        final IndexingPipeline pipeline = new IndexingPipeline("test", 1, 1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger counter = new AtomicInteger();
+        pipeline.submit(1, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                pipeline.submit(1, new Runnable() {
+                    @Override
+                    public void run() {
+                        counter.incrementAndGet();
+                    }
+                });
+            }
+        };
+        producer.start();
+        pipeline.close();
+        producer.join(10000);
+        assertFalse("Producer should not be blocked after closing", producer.isAlive());
+        assertEquals(1, pipeline.getSubmittedTasks());
+        latch.countDown();
+        pipeline.await();
+        assertEquals(0, counter.get());
+    }
+}